@@ -7,8 +7,59 @@ public class Main {
     public static void main(String[] args) {
         System.out.printf("Hello and welcome!");
 
+        // Optional arguments: --port <n> --volume <file> --shards <n> --follow <host:port> --max-lag-ms <n>
+        //                     --max-connections <n> --max-inflight <n> --max-queued <n> --max-queued-per-client <n>
+        int port = 12345;
+        String volume = "filesystem.dat";
+        int shards = 1;
+        String primary = null;
+        long maxLagMillis = 2000;
+        int maxConnections = 64;
+        int maxInFlight = 8;
+        int maxQueued = 32;
+        int maxQueuedPerClient = 4;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--volume":
+                    volume = args[i + 1];
+                    break;
+                case "--shards":
+                    shards = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--follow":
+                    primary = args[i + 1];
+                    break;
+                case "--max-lag-ms":
+                    maxLagMillis = Long.parseLong(args[i + 1]);
+                    break;
+                case "--max-connections":
+                    maxConnections = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--max-inflight":
+                    maxInFlight = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--max-queued":
+                    maxQueued = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--max-queued-per-client":
+                    maxQueuedPerClient = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.err.println("Ignoring unknown option " + args[i]);
+                    break;
+            }
+        }
+
         // Constructor: create new instance of FileServer
-        FileServer server = new FileServer(12345, "filesystem.dat", 10 * 128);
+        FileServer server = new FileServer(port, volume, 10 * 128, shards);
+        server.setAdmissionLimits(maxConnections, maxInFlight, maxQueued, maxQueuedPerClient);
+        if (primary != null) {
+            int colon = primary.lastIndexOf(':');
+            server.followPrimary(primary.substring(0, colon), Integer.parseInt(primary.substring(colon + 1)), maxLagMillis);
+        }
         // Start the file server
         server.start();
     }
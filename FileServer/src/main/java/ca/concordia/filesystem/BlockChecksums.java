@@ -0,0 +1,77 @@
+package ca.concordia.filesystem;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+
+/**
+ * CRC32C of every data block, as stored in the volume metadata. Checksums are
+ * recorded whenever a block is written, by the one writer that holds the block
+ * (reserved but not yet linked, or under the metadata write lock); readers of a
+ * block hold its file's lock, so the checksum they compare against is stable.
+ */
+class BlockChecksums {
+
+    private final int blockSize;
+    private final int[] checksums;
+
+    // Cost accounting
+    private final AtomicLong verifiedReads = new AtomicLong();
+    private final AtomicLong verifyNanos = new AtomicLong();
+    private final AtomicLong scrubbedBlocks = new AtomicLong();
+    private final AtomicLong corruptBlocks = new AtomicLong();
+
+    BlockChecksums(int maxBlocks, int blockSize) {
+        this.blockSize = blockSize;
+        this.checksums = new int[maxBlocks];
+    }
+
+    // CRC32C of one full block (the JDK uses the CPU's crc32 instructions where available)
+    static int compute(byte[] block, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(block, offset, length);
+        return (int) crc.getValue();
+    }
+
+    // Records the checksum of a block that has just been written
+    void record(int blockIndex, byte[] block) {
+        checksums[blockIndex] = compute(block, 0, blockSize);
+    }
+
+    int get(int blockIndex) {
+        return checksums[blockIndex];
+    }
+
+    void set(int blockIndex, int checksum) {
+        checksums[blockIndex] = checksum;
+    }
+
+    // True if the block (at offset in the buffer) matches its checksum, without touching the counters
+    boolean matches(int blockIndex, byte[] buffer, int offset) {
+        return compute(buffer, offset, blockSize) == checksums[blockIndex];
+    }
+
+    // Checks a block on the read path. Every read comes fresh from disk, so every read is
+    // checked: a block that passed once can still have been corrupted since.
+    boolean verify(int blockIndex, byte[] buffer, int offset) {
+        long start = System.nanoTime();
+        boolean intact = matches(blockIndex, buffer, offset);
+        verifyNanos.addAndGet(System.nanoTime() - start);
+        verifiedReads.incrementAndGet();
+        if (!intact) corruptBlocks.incrementAndGet();
+        return intact;
+    }
+
+    // Checks a block for the scrubber; always recomputes
+    boolean scrub(int blockIndex, byte[] block) {
+        boolean intact = matches(blockIndex, block, 0);
+        scrubbedBlocks.incrementAndGet();
+        if (!intact) corruptBlocks.incrementAndGet();
+        return intact;
+    }
+
+    ChecksumStats getStats(int blockSize) {
+        return new ChecksumStats(verifiedReads.get(), verifyNanos.get(),
+                scrubbedBlocks.get(), corruptBlocks.get(), blockSize);
+    }
+}
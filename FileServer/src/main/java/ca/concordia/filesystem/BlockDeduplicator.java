@@ -0,0 +1,104 @@
+package ca.concordia.filesystem;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Content index used by the optional deduplication mode: maps the SHA-256 of a
+ * zero-padded block to the data block that already holds it. Hashing is safe from
+ * any thread, so writers do it before taking locks; the index itself is only used
+ * under the file system's metadata write lock.
+ */
+class BlockDeduplicator {
+
+    private final int blockSize;
+    private final Map<ByteBuffer, Integer> blocksByHash = new HashMap<>();
+    private final ByteBuffer[] hashes;      // reverse mapping, indexed by data block
+    private final ThreadLocal<MessageDigest> digest;
+    private final byte[] zeroes;
+
+    // Cost accounting
+    private final AtomicLong hashedBytes = new AtomicLong();
+    private final AtomicLong hashNanos = new AtomicLong();
+    private long sharedWrites;
+
+    BlockDeduplicator(int maxBlocks, int blockSize) {
+        this.blockSize = blockSize;
+        this.hashes = new ByteBuffer[maxBlocks];
+        this.zeroes = new byte[blockSize];
+        this.digest = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (Exception e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        });
+    }
+
+    // Hashes one block's worth of data, padding short tails with zeroes as they are stored
+    ByteBuffer hash(byte[] data, int offset, int length) {
+        long start = System.nanoTime();
+        MessageDigest sha = digest.get();
+        sha.update(data, offset, length);
+        sha.update(zeroes, 0, blockSize - length);
+        ByteBuffer hash = ByteBuffer.wrap(sha.digest());
+        hashNanos.addAndGet(System.nanoTime() - start);
+        hashedBytes.addAndGet(blockSize);
+        return hash;
+    }
+
+    // Returns the block already holding this content, or null
+    Integer find(ByteBuffer hash) {
+        return blocksByHash.get(hash);
+    }
+
+    void register(int blockIndex, ByteBuffer hash) {
+        if (blocksByHash.putIfAbsent(hash, blockIndex) == null) {
+            hashes[blockIndex] = hash;
+        }
+    }
+
+    // Drops a block from the index once its last reference is gone
+    void forget(int blockIndex) {
+        ByteBuffer hash = hashes[blockIndex];
+        if (hash != null) {
+            blocksByHash.remove(hash);
+            hashes[blockIndex] = null;
+        }
+    }
+
+    // Follows a block that the defragmenter relocated
+    void move(int from, int to) {
+        ByteBuffer hash = hashes[from];
+        if (hash == null) return;
+        hashes[from] = null;
+        hashes[to] = hash;
+        blocksByHash.put(hash, to);
+    }
+
+    void recordShared() {
+        sharedWrites++;
+    }
+
+    void clear() {
+        blocksByHash.clear();
+        Arrays.fill(hashes, null);
+    }
+
+    long getHashedBytes() {
+        return hashedBytes.get();
+    }
+
+    long getHashNanos() {
+        return hashNanos.get();
+    }
+
+    long getSharedWrites() {
+        return sharedWrites;
+    }
+}
@@ -0,0 +1,110 @@
+package ca.concordia.filesystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * Zeroes freed blocks off the request path. Freed blocks are batched, sorted and
+ * written back as runs of adjacent blocks with one write per run. A block is only
+ * handed back to the allocator after it has been zeroed.
+ */
+class BlockReclaimer {
+
+    private final FileSystemManager fsManager;
+    private final long batchDelayMillis;    // lets a large delete queue all its blocks before the first write
+
+    private final List<Integer> pending = new ArrayList<>();            // guarded by this
+    private final Queue<Integer> reclaimed = new ConcurrentLinkedQueue<>();
+    private final Object flushLock = new Object();                      // one batch is zeroed at a time
+    private Thread worker;
+
+    BlockReclaimer(FileSystemManager fsManager) {
+        this(fsManager, 20);
+    }
+
+    BlockReclaimer(FileSystemManager fsManager, long batchDelayMillis) {
+        this.fsManager = fsManager;
+        this.batchDelayMillis = batchDelayMillis;
+    }
+
+    // Starts the reclaimer on a daemon thread
+    void start() {
+        worker = new Thread(this::run, "block-reclaimer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Zeroes whatever is still queued and stops the thread
+    void stop() throws Exception {
+        if (worker != null) {
+            worker.interrupt();
+            worker.join();
+        }
+        flush();
+    }
+
+    // Queues a freed block; never touches the disk
+    synchronized void release(int blockIndex) {
+        pending.add(blockIndex);
+        notifyAll();
+    }
+
+    // Returns the next zeroed block that may be reused, or null
+    Integer pollReclaimed() {
+        return reclaimed.poll();
+    }
+
+    synchronized int getPendingBlocks() {
+        return pending.size();
+    }
+
+    // Zeroes everything queued so far and waits for any batch already in progress
+    int flush() throws Exception {
+        synchronized (flushLock) {
+            List<Integer> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) return 0;
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+            Collections.sort(batch);
+            try {
+                int i = 0;
+                while (i < batch.size()) {
+                    int start = batch.get(i);
+                    int count = 1;
+                    while (i + count < batch.size() && batch.get(i + count) == start + count) count++;
+                    fsManager.zeroBlocks(start, count);
+                    i += count;
+                }
+            } catch (Exception e) {
+                synchronized (this) {
+                    pending.addAll(batch);  // retried by the next flush
+                }
+                throw e;
+            }
+            reclaimed.addAll(batch);
+            return batch.size();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                synchronized (this) {
+                    while (pending.isEmpty()) wait();
+                }
+                Thread.sleep(batchDelayMillis);
+                flush();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("Block reclaimer error: " + e.getMessage());
+            }
+        }
+    }
+}
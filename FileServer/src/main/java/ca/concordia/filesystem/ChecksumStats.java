@@ -0,0 +1,62 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Block checksum activity: how many block reads were verified, the CPU time
+ * verification added to the read path, and what scrubbing found.
+ */
+public class ChecksumStats {
+
+    private final long verifiedReads;
+    private final long verifyNanos;
+    private final long scrubbedBlocks;
+    private final long corruptBlocks;
+    private final int blockSize;
+
+    public ChecksumStats(long verifiedReads, long verifyNanos,
+                         long scrubbedBlocks, long corruptBlocks, int blockSize) {
+        this.verifiedReads = verifiedReads;
+        this.verifyNanos = verifyNanos;
+        this.scrubbedBlocks = scrubbedBlocks;
+        this.corruptBlocks = corruptBlocks;
+        this.blockSize = blockSize;
+    }
+
+    // Getters
+    public long getVerifiedReads() {
+        return verifiedReads;
+    }
+
+    public long getVerifyNanos() {
+        return verifyNanos;
+    }
+
+    public long getScrubbedBlocks() {
+        return scrubbedBlocks;
+    }
+
+    public long getCorruptBlocks() {
+        return corruptBlocks;
+    }
+
+    // Average CPU time a verified block read spent on its checksum
+    public double getNanosPerVerifiedBlock() {
+        return verifiedReads == 0 ? 0 : (double) verifyNanos / verifiedReads;
+    }
+
+    // Checksum throughput on the read path, in MB/s
+    public double getVerifyMBPerSecond() {
+        return verifyNanos == 0 ? 0 : (verifiedReads * blockSize / 1e6) / (verifyNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return "ChecksumStats{" +
+                "verifiedReads=" + verifiedReads +
+                ", nanosPerBlock=" + String.format("%.0f", getNanosPerVerifiedBlock()) +
+                ", verifyMBps=" + String.format("%.0f", getVerifyMBPerSecond()) +
+                ", scrubbedBlocks=" + scrubbedBlocks +
+                ", corruptBlocks=" + corruptBlocks +
+                '}';
+    }
+}
@@ -0,0 +1,74 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Totals for files written with compression: how many bytes (and blocks) stayed off
+ * the disk against the CPU time spent deflating and inflating them.
+ */
+public class CompressionStats {
+
+    private final long bytesIn;
+    private final long bytesStored;
+    private final long compressNanos;
+    private final long bytesInflated;
+    private final long decompressNanos;
+    private final int blockSize;
+
+    public CompressionStats(long bytesIn, long bytesStored, long compressNanos,
+                            long bytesInflated, long decompressNanos, int blockSize) {
+        this.bytesIn = bytesIn;
+        this.bytesStored = bytesStored;
+        this.compressNanos = compressNanos;
+        this.bytesInflated = bytesInflated;
+        this.decompressNanos = decompressNanos;
+        this.blockSize = blockSize;
+    }
+
+    // Getters
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public long getBytesStored() {
+        return bytesStored;
+    }
+
+    public long getBytesSaved() {
+        return bytesIn - bytesStored;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    public long getBytesInflated() {
+        return bytesInflated;
+    }
+
+    public long getDecompressNanos() {
+        return decompressNanos;
+    }
+
+    // Stored size as a fraction of the original size (1.0 means nothing was saved)
+    public double getRatio() {
+        return bytesIn == 0 ? 1.0 : (double) bytesStored / bytesIn;
+    }
+
+    // CPU time spent per block of I/O avoided
+    public double getNanosPerBlockSaved() {
+        long blocksSaved = getBytesSaved() / blockSize;
+        return blocksSaved == 0 ? 0 : (double) (compressNanos + decompressNanos) / blocksSaved;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "bytesIn=" + bytesIn +
+                ", bytesStored=" + bytesStored +
+                ", ratio=" + String.format("%.2f", getRatio()) +
+                ", compressMicros=" + compressNanos / 1000 +
+                ", decompressMicros=" + decompressNanos / 1000 +
+                ", nanosPerBlockSaved=" + String.format("%.0f", getNanosPerBlockSaved()) +
+                '}';
+    }
+}
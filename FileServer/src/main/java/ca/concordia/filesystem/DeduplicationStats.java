@@ -0,0 +1,68 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Space saved by block deduplication and what it cost on the write path.
+ * Logical blocks count every reference from a file; physical blocks count what is stored.
+ */
+public class DeduplicationStats {
+
+    private final int logicalBlocks;
+    private final int physicalBlocks;
+    private final int blockSize;
+    private final long sharedWrites;
+    private final long hashedBytes;
+    private final long hashNanos;
+
+    public DeduplicationStats(int logicalBlocks, int physicalBlocks, int blockSize,
+                              long sharedWrites, long hashedBytes, long hashNanos) {
+        this.logicalBlocks = logicalBlocks;
+        this.physicalBlocks = physicalBlocks;
+        this.blockSize = blockSize;
+        this.sharedWrites = sharedWrites;
+        this.hashedBytes = hashedBytes;
+        this.hashNanos = hashNanos;
+    }
+
+    // Getters
+    public int getLogicalBlocks() {
+        return logicalBlocks;
+    }
+
+    public int getPhysicalBlocks() {
+        return physicalBlocks;
+    }
+
+    public long getBytesSaved() {
+        return (long) (logicalBlocks - physicalBlocks) * blockSize;
+    }
+
+    public long getSharedWrites() {
+        return sharedWrites;
+    }
+
+    public long getHashedBytes() {
+        return hashedBytes;
+    }
+
+    public long getHashNanos() {
+        return hashNanos;
+    }
+
+    // Hashing throughput, i.e. the extra work each written byte costs
+    public double getHashMegabytesPerSecond() {
+        return hashNanos == 0 ? 0 : (hashedBytes / 1e6) / (hashNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return "DeduplicationStats{" +
+                "logicalBlocks=" + logicalBlocks +
+                ", physicalBlocks=" + physicalBlocks +
+                ", bytesSaved=" + getBytesSaved() +
+                ", sharedWrites=" + sharedWrites +
+                ", hashedBytes=" + hashedBytes +
+                ", hashMBps=" + String.format("%.1f", getHashMegabytesPerSecond()) +
+                '}';
+    }
+}
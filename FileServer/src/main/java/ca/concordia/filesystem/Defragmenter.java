@@ -0,0 +1,76 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Low-priority background compactor. Every pass it moves at most a few fragmented
+ * files into contiguous free runs, but only once the volume has been idle for a while,
+ * and it never waits on a file lock held by a client.
+ */
+public class Defragmenter {
+
+    private final FileSystemManager fsManager;
+    private final long intervalMillis;      // pause between passes
+    private final long idleMillis;          // required quiet time before touching the disk
+    private final int maxMovesPerPass;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public Defragmenter(FileSystemManager fsManager) {
+        this(fsManager, 1000, 250, 1);
+    }
+
+    public Defragmenter(FileSystemManager fsManager, long intervalMillis, long idleMillis, int maxMovesPerPass) {
+        this.fsManager = fsManager;
+        this.intervalMillis = intervalMillis;
+        this.idleMillis = idleMillis;
+        this.maxMovesPerPass = maxMovesPerPass;
+    }
+
+    // Starts the compactor on a daemon thread
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this::run, "defragmenter");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    // Stops the compactor and waits for the current pass to finish
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join();
+            worker = null;
+        }
+    }
+
+    // Runs a single pass; returns the number of files moved
+    public int runOnce() {
+        int moved = 0;
+        try {
+            while (moved < maxMovesPerPass && fsManager.getIdleMillis() >= idleMillis && fsManager.compactNextFile()) {
+                moved++;
+            }
+        } catch (Exception e) {
+            System.err.println("Defragmenter error: " + e.getMessage());
+        }
+        if (moved > 0) {
+            System.out.println("Defragmented " + moved + " file(s): " + fsManager.getFragmentationStats());
+        }
+        return moved;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            runOnce();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ca.concordia.filesystem;
+
+import ca.concordia.filesystem.datastructures.FEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Sorted per-directory index of entry slots. The parent links stored in each FEntry are
+ * the on-disk source of truth; the index is rebuilt from them at mount time so lookups
+ * cost O(log n) per path component and a listing only visits the directory it lists.
+ * Callers hold the file system's metadata lock.
+ */
+class DirectoryIndex {
+
+    private final Map<Integer, TreeMap<String, Integer>> directories = new HashMap<>();
+
+    DirectoryIndex() {
+        directories.put((int) FEntry.ROOT, new TreeMap<>());
+    }
+
+    // Rebuilds the index from the loaded entry table
+    void rebuild(FEntry[] fentries) {
+        directories.clear();
+        directories.put((int) FEntry.ROOT, new TreeMap<>());
+        for (int i = 0; i < fentries.length; i++) {
+            if (!fentries[i].getFilename().isEmpty() && fentries[i].isDirectory()) {
+                directories.put(i, new TreeMap<>());
+            }
+        }
+        for (int i = 0; i < fentries.length; i++) {
+            if (fentries[i].getFilename().isEmpty()) continue;
+            int parent = fentries[i].getParent();
+            if (parent == i || !directories.containsKey(parent)) {
+                parent = FEntry.ROOT;    // orphaned entries are re-attached to the root
+                fentries[i].setParent(FEntry.ROOT);
+            }
+            directories.get(parent).put(fentries[i].getFilename(), i);
+        }
+    }
+
+    // Resolves a normalized path to its entry slot, FEntry.ROOT for "", or null if missing
+    Integer resolve(String path) {
+        if (path.isEmpty()) return (int) FEntry.ROOT;
+        int current = FEntry.ROOT;
+        for (String name : path.split("/")) {
+            TreeMap<String, Integer> children = directories.get(current);
+            if (children == null) return null;    // a file used as a directory
+            Integer slot = children.get(name);
+            if (slot == null) return null;
+            current = slot;
+        }
+        return current;
+    }
+
+    boolean isDirectory(int slot) {
+        return directories.containsKey(slot);
+    }
+
+    boolean isEmpty(int directory) {
+        TreeMap<String, Integer> children = directories.get(directory);
+        return children == null || children.isEmpty();
+    }
+
+    // Adds an entry to its parent directory, registering it as a directory if needed
+    void add(int parent, String name, int slot, boolean directory) {
+        directories.get(parent).put(name, slot);
+        if (directory) directories.put(slot, new TreeMap<>());
+    }
+
+    void remove(int parent, String name, int slot) {
+        TreeMap<String, Integer> children = directories.get(parent);
+        if (children != null) children.remove(name);
+        directories.remove(slot);
+    }
+
+    // Lists a directory in name order; subdirectories carry a trailing '/'
+    List<String> list(int directory) {
+        List<String> names = new ArrayList<>();
+        TreeMap<String, Integer> children = directories.get(directory);
+        if (children == null) return names;
+        for (Map.Entry<String, Integer> child : children.entrySet()) {
+            names.add(isDirectory(child.getValue()) ? child.getKey() + "/" : child.getKey());
+        }
+        return names;
+    }
+}
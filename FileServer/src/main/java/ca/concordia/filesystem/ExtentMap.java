@@ -0,0 +1,57 @@
+package ca.concordia.filesystem;
+
+import java.util.Arrays;
+
+
+/**
+ * In-memory view of one file's extents, rebuilt whenever they change. It keeps the
+ * file block each extent starts at, so the block holding a given offset is found by
+ * binary search instead of by following links.
+ */
+class ExtentMap {
+
+    static final ExtentMap EMPTY = new ExtentMap(new int[0], new int[0]);
+
+    private final int[] fileBlocks;     // first file block of each extent, ascending
+    private final int[] starts;
+    private final int[] lengths;
+    private final int blockCount;
+
+    ExtentMap(int[] starts, int[] lengths) {
+        this.starts = starts;
+        this.lengths = lengths;
+        this.fileBlocks = new int[starts.length];
+        int total = 0;
+        for (int i = 0; i < starts.length; i++) {
+            fileBlocks[i] = total;
+            total += lengths[i];
+        }
+        this.blockCount = total;
+    }
+
+    int getExtentCount() {
+        return starts.length;
+    }
+
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    // Disk block holding the given block of the file
+    int blockAt(int fileBlock) {
+        int i = Arrays.binarySearch(fileBlocks, fileBlock);
+        if (i < 0) i = -i - 2;     // inside the extent that starts before it
+        return starts[i] + fileBlock - fileBlocks[i];
+    }
+
+    // Disk blocks of the file in file order
+    int[] blocks() {
+        int[] blocks = new int[blockCount];
+        for (int i = 0; i < starts.length; i++) {
+            for (int j = 0; j < lengths[i]; j++) {
+                blocks[fileBlocks[i] + j] = starts[i] + j;
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,73 @@
+package ca.concordia.filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Deflate stage used for files created with compression enabled. It sits between the
+ * protocol bytes and block allocation and keeps the byte and CPU counters that make up
+ * the I/O-saved versus CPU-spent tradeoff.
+ */
+class FileCompressor {
+
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesStored = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+    private final AtomicLong bytesInflated = new AtomicLong();
+    private final AtomicLong decompressNanos = new AtomicLong();
+
+    // Deflates the contents; returns null when that would not make them smaller
+    byte[] compress(byte[] contents) {
+        long start = System.nanoTime();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length);
+            byte[] buffer = new byte[512];
+            while (!deflater.finished() && out.size() < contents.length) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            byte[] compressed = deflater.finished() && out.size() < contents.length ? out.toByteArray() : null;
+            bytesIn.addAndGet(contents.length);
+            bytesStored.addAndGet(compressed == null ? contents.length : compressed.length);
+            return compressed;
+        } finally {
+            deflater.end();
+            compressNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // Inflates stored bytes back to the original contents
+    byte[] decompress(byte[] stored, int originalSize) throws Exception {
+        long start = System.nanoTime();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] contents = new byte[originalSize];
+            int length = 0;
+            while (length < originalSize && !inflater.finished()) {
+                int inflated = inflater.inflate(contents, length, originalSize - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += inflated;
+            }
+            if (length != originalSize) throw new Exception("ERROR: compressed data is corrupt");
+            bytesInflated.addAndGet(originalSize);
+            return contents;
+        } catch (DataFormatException e) {
+            throw new Exception("ERROR: compressed data is corrupt");
+        } finally {
+            inflater.end();
+            decompressNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    CompressionStats getStats(int blockSize) {
+        return new CompressionStats(bytesIn.get(), bytesStored.get(), compressNanos.get(),
+                bytesInflated.get(), decompressNanos.get(), blockSize);
+    }
+}
@@ -1,31 +1,83 @@
 package ca.concordia.filesystem;
 
 import ca.concordia.filesystem.datastructures.FEntry;
+import ca.concordia.filesystem.datastructures.FExtent;
 import ca.concordia.filesystem.datastructures.FNode;
 
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
-public class FileSystemManager {
+public class FileSystemManager implements AutoCloseable {
 
     // Constants defining file system limits
     private final int MAXFILES = 5;
     private final int MAXBLOCKS = 10;
     private final int BLOCK_SIZE = 128;
+    private final int MAX_READ_GAP = 2;     // unused blocks a read may span rather than issue another I/O
+
+    // On-disk layout: header (magic + version), entry table, extent table, block checksums.
+    // Version 1 volumes have no header and use 15-byte entries, version 2 entries have no
+    // stored size, version 3 has no checksums, versions up to 4 map files with a table of
+    // one 8-byte node per block instead of extents, and version 5 entries have no inline
+    // area; all are upgraded when mounted.
+    private final int MAGIC = 0x46534D00;   // "FSM\0"
+    private final short VERSION = 6;
+    private final int HEADER_SIZE = 6;
 
     // Core file system structures
     private final RandomAccessFile disk;
     private final FEntry[] fentries;
-    private final FNode[] fnodes;
+    private final FExtent[] fextents;
+    private final ExtentMap[] extentMaps = new ExtentMap[MAXFILES];    // per entry slot, for offset lookups
     private final boolean[] freeBlockList;
+    private final DirectoryIndex directoryIndex = new DirectoryIndex();
+
+    // Reference count per data block; above 1 only when deduplication shares the block
+    private final int[] blockRefs = new int[MAXBLOCKS];
+    private final BlockDeduplicator deduplicator = new BlockDeduplicator(MAXBLOCKS, BLOCK_SIZE);
+    private volatile boolean deduplication;  // set under metadataLock; writers peek at it to hash before locking
+
+    // CRC32C of every data block, checked on read and by the scrubber
+    private final BlockChecksums checksums = new BlockChecksums(MAXBLOCKS, BLOCK_SIZE);
+    private int scrubCursor;    // next block the scrubber looks at
+
+    // Optional per-file compression stage
+    private final FileCompressor compressor = new FileCompressor();
+
+    // Notified of every applied mutation (used for replication)
+    private volatile MutationListener mutationListener;
 
     // Synchronization primitives
-    private final ReentrantReadWriteLock metadataLock = new ReentrantReadWriteLock(); // protects fentries[] and freeBlockList[]
-    private final ConcurrentHashMap<String, ReentrantReadWriteLock> fileLocks = new ConcurrentHashMap<>(); // per-file locks
+    // metadataLock protects fentries[], freeBlockList[] and the directory index;
+    // fileLocks holds one lock per path
+    private final ReentrantReadWriteLock metadataLock = new ReentrantReadWriteLock();
+    private final ConcurrentHashMap<String, ReentrantReadWriteLock> fileLocks = new ConcurrentHashMap<>();
+
+    // Read path accounting
+    private final AtomicLong fileReads = new AtomicLong();
+    private final AtomicLong blocksRead = new AtomicLong();
+    private final AtomicLong readIos = new AtomicLong();
+    private final AtomicLong gapBlocksRead = new AtomicLong();
+    private final AtomicLong inlineReads = new AtomicLong();
+
+    // Foreground activity tracking (used to throttle background maintenance)
+    private volatile long lastForegroundNanos = System.nanoTime();
+    private final AtomicLong blocksMoved = new AtomicLong();
+
+    // Background zeroing of freed blocks (blocks stay allocated until it is done with them)
+    private final BlockReclaimer reclaimer;
+    private final byte[] zeroes = new byte[MAXBLOCKS * BLOCK_SIZE];
 
     // Constructor: initializes disk, metadata, and in-memory structures
     public FileSystemManager(String filename, int totalSize) {
@@ -33,79 +85,200 @@ public class FileSystemManager {
             disk = new RandomAccessFile(filename, "rw");
 
             fentries = new FEntry[MAXFILES];
-            fnodes = new FNode[MAXBLOCKS];
+            fextents = new FExtent[MAXBLOCKS];     // a file can never need more extents than blocks
             freeBlockList = new boolean[MAXBLOCKS];
+            reclaimer = new BlockReclaimer(this);
 
-            // initialize each node
+            // initialize each extent
             for (int i = 0; i < MAXBLOCKS; i++) {
-                fnodes[i] = new FNode();
+                fextents[i] = new FExtent();
             }
 
             // reserve block for metadata
-            int metadataBytes = (MAXFILES * 15) + (MAXBLOCKS * 8);
-            int metadataBlocks = (int) Math.ceil((double) metadataBytes / BLOCK_SIZE);
-            for (int i = 0; i < metadataBlocks; i++) {
+            for (int i = 0; i < firstDataBlock(); i++) {
                 freeBlockList[i] = true;
             }
 
             loadMetadata();     // call
+            reclaimer.start();
         } catch (Exception e) {
             throw new RuntimeException("Failed to initialize file system", e);
         }
     }
 
-    // Loads metadata from disk into memory (fentries and fnodes)
+    // Loads metadata from disk into memory (fentries and fextents)
     private void loadMetadata() throws Exception {
         disk.seek(0);
+        // Legacy volumes start directly with the entry table. A legacy first entry named "FSM"
+        // also starts with the magic, but its zero padding reads as version 0, so the header
+        // only counts when a version we know follows it.
+        int version = 1;
+        if (disk.length() >= HEADER_SIZE && disk.readInt() == MAGIC) {
+            version = disk.readShort();
+        }
+        if (version < 2 || version > VERSION) {
+            version = 1;
+            disk.seek(0);
+        }
 
-        // reach each file entry and initialize its lock if it exists
+        // read each file entry
+        int entrySize = version >= 6 ? FEntry.SIZE
+                : version >= 3 ? FEntry.V3_SIZE
+                : version == 2 ? FEntry.V2_SIZE
+                : FEntry.LEGACY_SIZE;
         for (int i = 0; i < MAXFILES; i++) {
-            byte[] entryBytes = new byte[15];
+            byte[] entryBytes = new byte[entrySize];
             disk.read(entryBytes);
             fentries[i] = FEntry.fromBytes(entryBytes);
-            if (!fentries[i].getFilename().isEmpty()) {
-                fileLocks.put(fentries[i].getFilename(), new ReentrantReadWriteLock());
+        }
+
+        // read each extent (older volumes have a node per block instead)
+        FNode[] legacyNodes = null;
+        if (version >= 5) {
+            for (int i = 0; i < MAXBLOCKS; i++) {
+                byte[] extentBytes = new byte[FExtent.SIZE];
+                disk.read(extentBytes);
+                fextents[i] = FExtent.fromBytes(extentBytes);
+            }
+        } else {
+            legacyNodes = new FNode[MAXBLOCKS];
+            for (int i = 0; i < MAXBLOCKS; i++) {
+                byte[] nodeBytes = new byte[8];
+                disk.read(nodeBytes);
+                legacyNodes[i] = FNode.fromBytes(nodeBytes);
             }
         }
 
-        // read each node and validate its block index
+        // read the block checksums (older volumes get them from the blocks as they are now)
+        if (version >= 4) {
+            for (int i = 0; i < MAXBLOCKS; i++) {
+                checksums.set(i, disk.readInt());
+            }
+        }
+
+        // migrate node chains to extents, merging physically adjacent blocks
+        if (legacyNodes != null) {
+            for (FEntry entry : fentries) {
+                int[] blocks = legacyBlocks(entry, legacyNodes);
+                entry.setFirstBlock((short) -1);
+                if (!entry.getFilename().isEmpty() && !entry.isDirectory()) linkExtents(entry, blocks);
+            }
+        }
+
+        // rebuild the free block list and reference counts from the extents that are still
+        // reachable from an entry, releasing extents left behind by earlier rewrites
+        boolean[] reachable = new boolean[MAXBLOCKS];
+        for (int slot = 0; slot < MAXFILES; slot++) {
+            FEntry entry = fentries[slot];
+            if (entry.getFilename().isEmpty() || entry.isDirectory()) continue;
+            for (int extent : extentsOf(entry)) {
+                reachable[extent] = true;
+            }
+            extentMaps[slot] = mapOf(entry);
+            for (int blockIndex : extentMaps[slot].blocks()) {
+                freeBlockList[blockIndex] = true;
+                blockRefs[blockIndex]++;
+            }
+        }
         for (int i = 0; i < MAXBLOCKS; i++) {
-            byte[] nodeBytes = new byte[8];
-            disk.read(nodeBytes);
-            FNode node = FNode.fromBytes(nodeBytes);
-            fnodes[i] = (node.getBlockIndex() >= 0 && node.getBlockIndex() < MAXBLOCKS) ? node : new FNode();
+            if (!reachable[i]) fextents[i].reset();
+        }
+        if (version < 4) {
+            byte[] block = new byte[BLOCK_SIZE];
+            for (int i = firstDataBlock(); i < MAXBLOCKS; i++) {
+                if (blockRefs[i] == 0) continue;
+                readBlock(i, block, 0, BLOCK_SIZE);
+                checksums.record(i, block);
+            }
+        }
+
+        // blocks freed just before a crash may never have reached the reclaimer; zero them
+        // now so that no old contents come back in a free block
+        byte[] block = new byte[BLOCK_SIZE];
+        for (int i = firstDataBlock(); i < MAXBLOCKS; i++) {
+            if (blockRefs[i] > 0) continue;
+            readBlock(i, block, 0, BLOCK_SIZE);
+            if (!Arrays.equals(block, 0, BLOCK_SIZE, zeroes, 0, BLOCK_SIZE)) zeroBlocks(i, 1);
+        }
+
+        // index the namespace and initialize a lock for every existing path
+        directoryIndex.rebuild(fentries);
+        for (int i = 0; i < MAXFILES; i++) {
+            if (!fentries[i].getFilename().isEmpty()) {
+                fileLocks.put(pathOf(i), new ReentrantReadWriteLock());
+            }
+        }
+
+        if (version < VERSION && disk.length() > 0) {
+            saveMetadata();     // upgrade the volume in place
         }
     }
 
-    // Saves metadata (fentries and fnodes) back to disk
+    // Saves metadata (fentries and fextents) back to disk
     private void saveMetadata() throws Exception {
-        disk.seek(0);
-        for (FEntry entry : fentries) {
-            disk.write(entry.toBytes());
-        }
-        for (FNode node : fnodes) {
-            disk.write(node.toBytes());
+        synchronized (disk) {
+            disk.seek(0);
+            disk.writeInt(MAGIC);
+            disk.writeShort(VERSION);
+            for (FEntry entry : fentries) {
+                disk.write(entry.toBytes());
+            }
+            for (FExtent extent : fextents) {
+                disk.write(extent.toBytes());
+            }
+            for (int i = 0; i < MAXBLOCKS; i++) {
+                disk.writeInt(checksums.get(i));
+            }
         }
     }
 
     // Creates a new file entry and initializes its lock
     public void createFile(String filename) throws Exception {
+        createEntry(filename, false, false);
+    }
+
+    // Creates a new file whose contents are deflated on write when that makes them smaller
+    public void createFile(String filename, boolean compressed) throws Exception {
+        createEntry(filename, false, compressed);
+    }
+
+    // Creates a new, empty directory
+    public void makeDirectory(String path) throws Exception {
+        createEntry(path, true, false);
+    }
+
+    // Adds a file or directory entry under an existing parent directory
+    private void createEntry(String path, boolean directory, boolean compressed) throws Exception {
+        String normalized = normalize(path);
+        int split = normalized.lastIndexOf('/');
+        String parentPath = split < 0 ? "" : normalized.substring(0, split);
+        String name = normalized.substring(split + 1);
+        if (name.isEmpty()) throw new Exception("ERROR: Missing filename");
+
         metadataLock.writeLock().lock();    // lock (metadata)
         try {
-            for (FEntry entry : fentries) {
-                if (entry.getFilename().equals(filename)) {     // check duplicate file
-                    throw new Exception("ERROR: file already exists");
-                }
+            Integer parent = directoryIndex.resolve(parentPath);
+            if (parent == null || (parent != FEntry.ROOT && !directoryIndex.isDirectory(parent))) {
+                throw new Exception("ERROR: directory " + parentPath + " does not exist");
+            }
+            if (directoryIndex.resolve(normalized) != null) {     // check duplicate file
+                throw new Exception("ERROR: file already exists");
             }
 
             // finds an empty entry slot and initializes it
             for (int i = 0; i < fentries.length; i++) {
                 if (fentries[i].getFilename().isEmpty()) {
-                    fentries[i].setFilename(filename);
+                    fentries[i].setFilename(name);
                     fentries[i].setFilesize((short) 0);
                     fentries[i].setFirstBlock((short) -1);
-                    fileLocks.put(filename, new ReentrantReadWriteLock());
+                    fentries[i].setParent((short) (int) parent);
+                    fentries[i].setDirectory(directory);
+                    fentries[i].setCompressed(compressed);
+                    extentMaps[i] = ExtentMap.EMPTY;
+                    directoryIndex.add(parent, name, i, directory);
+                    fileLocks.put(normalized, new ReentrantReadWriteLock());
                     saveMetadata();
+                    if (mutationListener != null) mutationListener.created(normalized, directory, compressed);
                     return;
                 }
             }
@@ -116,144 +289,844 @@ public class FileSystemManager {
         }
     }
 
-    // Deletes a file and frees its blocks and metadata
+    // Deletes a file (or an empty directory) and frees its blocks and metadata
     public void deleteFile(String filename) throws Exception {
-        ReentrantReadWriteLock lock = fileLocks.get(filename);
+        String path = normalize(filename);
+        ReentrantReadWriteLock lock = fileLocks.get(path);
         if (lock == null) throw new Exception("ERROR: file " + filename + " does not exist");
 
+        markForeground();
         lock.writeLock().lock();    // lock
+        metadataLock.writeLock().lock();
         try {
-            for (FEntry entry : fentries) {
-                if (entry.getFilename().equals(filename)) {
-                    int block = entry.getFirstBlock();
-                    while (block != -1) {
-                        int dataBlockIndex = fnodes[block].getBlockIndex();
-                        freeBlockList[dataBlockIndex] = false;
-                        fnodes[block].reset();
-                        overwriteBlock(dataBlockIndex);
-                        block = fnodes[block].getNext();
-                    }
-                    entry.reset();
-                    fileLocks.remove(filename);
-                    saveMetadata();
-                    return;
-                }
+            int slot = findEntry(path, true);
+            FEntry entry = fentries[slot];
+            if (entry.isDirectory() && !directoryIndex.isEmpty(slot)) {
+                throw new Exception("ERROR: directory " + filename + " is not empty");
             }
-            throw new Exception("ERROR: file " + filename + " does not exist");
+            List<Integer> extents = extentsOf(entry);
+            directoryIndex.remove(entry.getParent(), entry.getFilename(), slot);
+            entry.reset();
+            extentMaps[slot] = null;
+            fileLocks.remove(path);
+            releaseExtents(extents);    // unlink only; the reclaimer zeroes the blocks later
+            if (mutationListener != null) mutationListener.deleted(path);
         } finally {
+            metadataLock.writeLock().unlock();
             lock.writeLock().unlock();  // remove lock
         }
     }
 
     // Writes content to a file, allocating new blocks and linking them
     public void writeFile(String filename, byte[] contents) throws Exception {
-        ReentrantReadWriteLock lock = fileLocks.get(filename);
+        String path = normalize(filename);
+        ReentrantReadWriteLock lock = fileLocks.get(path);
         if (lock == null) throw new Exception("ERROR: file " + filename + " does not exist");
 
+        if (contents.length > Short.MAX_VALUE) throw new Exception("ERROR: file too large");
+
+        markForeground();
         lock.writeLock().lock();
         try {
-            int blocksNeeded = (int) Math.ceil((double) contents.length / BLOCK_SIZE);
-            List<Integer> freeBlocks = new ArrayList<>();
-            for (int i = 0; i < freeBlockList.length; i++) {
-                if (!freeBlockList[i]) freeBlocks.add(i);
-                if (freeBlocks.size() == blocksNeeded) break;
+            // compress before taking the metadata lock so other files are not held up by it
+            byte[] stored = contents;
+            if (isCompressed(path)) {
+                byte[] compressed = compressor.compress(contents);
+                if (compressed != null) stored = compressed;
+            }
+            writeStored(path, contents.length, stored);
+            if (mutationListener != null) mutationListener.written(path, contents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Stores a file's (possibly deflated) bytes in newly allocated blocks (caller holds the file's write lock).
+    // The metadata lock is only held to plan and reserve the blocks and, once they are
+    // written, to link them; hashing and block writes run without it.
+    private void writeStored(String path, int filesize, byte[] contents) throws Exception {
+        boolean inline = contents.length > 0 && contents.length <= FEntry.INLINE_CAPACITY;
+        int blocksNeeded = inline ? 0 : (int) Math.ceil((double) contents.length / BLOCK_SIZE);
+
+        // with deduplication on, blocks whose content is already stored are shared, not written
+        ByteBuffer[] hashes = null;
+        if (deduplication && !inline) {
+            hashes = new ByteBuffer[blocksNeeded];
+            for (int i = 0; i < blocksNeeded; i++) {
+                int offset = i * BLOCK_SIZE;
+                hashes[i] = deduplicator.hash(contents, offset, Math.min(BLOCK_SIZE, contents.length - offset));
+            }
+        }
+
+        int[] blocks = new int[blocksNeeded];
+        boolean[] fresh = new boolean[blocksNeeded];    // newly allocated, to be written
+        boolean[] shared = new boolean[blocksNeeded];   // already stored for another file
+        metadataLock.writeLock().lock();    // block allocation touches freeBlockList[]
+        try {
+            int slot = findEntry(path, false);
+            FEntry entry = fentries[slot];
+
+            // tiny files live in the entry itself and take no data block at all
+            if (inline) {
+                List<Integer> oldExtents = extentsOf(entry);
+                entry.setFirstBlock((short) -1);
+                entry.setInlineData(contents);
+                extentMaps[slot] = ExtentMap.EMPTY;
+                entry.setFilesize((short) filesize);
+                entry.setStoredSize((short) contents.length);
+                entry.setDeflated(contents.length != filesize);
+                releaseExtents(oldExtents);     // saves the entry along with the unlinking
+                return;
+            }
+
+            boolean dedup = deduplication && hashes != null;   // the mode may have been switched since hashing
+            int newBlocks = blocksNeeded;
+            if (dedup) {
+                Set<ByteBuffer> unseen = new HashSet<>();
+                for (int i = 0; i < blocksNeeded; i++) {
+                    if (deduplicator.find(hashes[i]) != null || !unseen.add(hashes[i])) newBlocks--;
+                }
+            }
+
+            List<Integer> freeBlocks = findFreeBlocks(newBlocks);
+            if (freeBlocks.size() < newBlocks) {
+                reclaimer.flush();  // blocks waiting to be zeroed become usable once reclaimed
+                freeBlocks = findFreeBlocks(newBlocks);
+            }
+            if (freeBlocks.size() < newBlocks) {
+                throw new Exception("ERROR: file too large");
+            }
+
+            // decide where every block goes before touching anything: a stored copy, a copy
+            // made earlier in this write, or a newly allocated block
+            Map<ByteBuffer, Integer> planned = new HashMap<>();
+            int nextFree = 0;
+            for (int i = 0; i < blocksNeeded; i++) {
+                Integer blockIndex = dedup ? deduplicator.find(hashes[i]) : null;
+                shared[i] = blockIndex != null;
+                if (blockIndex == null && dedup) blockIndex = planned.get(hashes[i]);
+                if (blockIndex == null) {
+                    blockIndex = freeBlocks.get(nextFree++);
+                    fresh[i] = true;
+                    if (dedup) planned.put(hashes[i], blockIndex);
+                }
+                blocks[i] = blockIndex;
+            }
+            if (countRuns(blocks) > countFreeExtents()) {
+                throw new Exception("ERROR: file too large");
+            }
+
+            // reserve: new blocks leave the free list (unreferenced, so the scrubber skips them
+            // while they are written), shared blocks gain their reference now so they stay put
+            for (int i = 0; i < blocksNeeded; i++) {
+                if (fresh[i]) freeBlockList[blocks[i]] = true;
+                if (shared[i]) blockRefs[blocks[i]]++;
+            }
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+
+        try {
+            for (int i = 0; i < blocksNeeded; i++) {
+                if (fresh[i]) writeBlock(blocks[i], contents, i * BLOCK_SIZE);
             }
-            if (freeBlocks.size() < blocksNeeded) {
+        } catch (Exception e) {
+            releaseReservation(blocks, fresh, shared);
+            throw e;
+        }
+
+        metadataLock.writeLock().lock();
+        try {
+            if (countRuns(blocks) > countFreeExtents()) {     // other writes took the extent records meanwhile
+                releaseReservation(blocks, fresh, shared);
                 throw new Exception("ERROR: file too large");
             }
+            int slot = findEntry(path, false);      // the file's write lock keeps the entry in place
+            FEntry entry = fentries[slot];
+            boolean dedup = deduplication && hashes != null;
+            for (int i = 0; i < blocksNeeded; i++) {
+                if (fresh[i] && dedup) deduplicator.register(blocks[i], hashes[i]);
+                if (!fresh[i]) deduplicator.recordShared();
+                if (!shared[i]) blockRefs[blocks[i]]++;     // shared blocks were counted when reserved
+            }
 
-            for (FEntry entry : fentries) {
-                if (entry.getFilename().equals(filename)) {
-                    int prevNode = -1;
-                    for (int i = 0; i < blocksNeeded; i++) {
-                        int blockIndex = freeBlocks.get(i);
-                        int nodeIndex = findFreeNode();
-                        fnodes[nodeIndex] = new FNode(blockIndex);
-                        if (prevNode != -1) {
-                            fnodes[prevNode].setNext(nodeIndex);
-                        } else {
-                            entry.setFirstBlock((short) nodeIndex);
-                        }
-                        writeBlock(blockIndex, contents, i * BLOCK_SIZE);
-                        freeBlockList[blockIndex] = true;
-                        prevNode = nodeIndex;
-                    }
-                    entry.setFilesize((short) contents.length);
-                    saveMetadata();
-                    return;
+            List<Integer> oldExtents = extentsOf(entry);
+            entry.setFirstBlock((short) -1);
+            entry.setInlineData(null);
+            linkExtents(entry, blocks);
+            extentMaps[slot] = mapOf(entry);
+            entry.setFilesize((short) filesize);
+            entry.setStoredSize((short) contents.length);
+            entry.setDeflated(contents.length != filesize);
+            releaseExtents(oldExtents);     // the previous contents are no longer reachable
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+    }
+
+    // Gives back the blocks a failed write had reserved; new ones go through the reclaimer
+    // like any freed block, since they may already hold part of the data
+    private void releaseReservation(int[] blocks, boolean[] fresh, boolean[] shared) {
+        metadataLock.writeLock().lock();
+        try {
+            for (int i = 0; i < blocks.length; i++) {
+                if (fresh[i]) {
+                    reclaimer.release(blocks[i]);
+                } else if (shared[i] && --blockRefs[blocks[i]] == 0) {
+                    deduplicator.forget(blocks[i]);
+                    reclaimer.release(blocks[i]);
                 }
             }
-            throw new Exception("ERROR: file " + filename + " does not exist");
         } finally {
-            lock.writeLock().unlock();
+            metadataLock.writeLock().unlock();
+        }
+    }
+
+    // True if the file at this path opted in to compression
+    public boolean isCompressed(String filename) throws Exception {
+        String path = normalize(filename);
+        metadataLock.readLock().lock();
+        try {
+            return fentries[findEntry(path, false)].isCompressed();
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    // True if a file or directory exists at this path
+    public boolean exists(String path) {
+        metadataLock.readLock().lock();
+        try {
+            Integer slot = directoryIndex.resolve(normalize(path));
+            return slot != null && slot != FEntry.ROOT;
+        } finally {
+            metadataLock.readLock().unlock();
         }
     }
 
-    // Reads a file's contents by following its block chain
+    // Registers the listener told about every applied mutation
+    public void setMutationListener(MutationListener listener) {
+        this.mutationListener = listener;
+    }
+
+    // Reads a file's contents from its extents
     public byte[] readFile(String filename) throws Exception {
-        ReentrantReadWriteLock lock = fileLocks.get(filename);
+        String path = normalize(filename);
+        ReentrantReadWriteLock lock = fileLocks.get(path);
         if (lock == null) throw new Exception("ERROR: file " + filename + " does not exist");
 
+        markForeground();
         lock.readLock().lock();
         try {
-            for (FEntry entry : fentries) {
-                if (entry.getFilename().equals(filename)) {
-                    byte[] data = new byte[entry.getFilesize()];
-                    int block = entry.getFirstBlock();
-                    int offset = 0;
-                    while (block != -1) {
-                        int blockIndex = fnodes[block].getBlockIndex();
-                        disk.seek(blockIndex * BLOCK_SIZE);
-                        int toRead = Math.min(BLOCK_SIZE, data.length - offset);
-                        disk.read(data, offset, toRead);
-                        offset += toRead;
-                        block = fnodes[block].getNext();
-                    }
-                    return data;
-                }
+            FEntry entry;
+            ExtentMap map;
+            metadataLock.readLock().lock();     // only for the lookup; the file lock keeps the entry stable
+            try {
+                int slot = findEntry(path, false);
+                entry = fentries[slot];
+                map = extentMaps[slot];
+            } finally {
+                metadataLock.readLock().unlock();
             }
-            throw new Exception("ERROR: file " + filename + " does not exist");
+            return readWhole(entry, map, filename);
         } finally {
             lock.readLock().unlock();
         }
     }
 
-    // Lists all non-empty filenames
+    // Reads and inflates a whole file; the caller holds its read lock. Counted as one read.
+    private byte[] readWhole(FEntry entry, ExtentMap map, String filename) throws Exception {
+        byte[] data;
+        if (entry.isInline()) {
+            data = entry.getInlineData();   // no block I/O at all
+            inlineReads.incrementAndGet();
+        } else {
+            data = new byte[entry.getStoredSize()];
+            readBlocks(map.blocks(), data, filename);
+        }
+        fileReads.incrementAndGet();
+        return entry.isDeflated() ? compressor.decompress(data, entry.getFilesize()) : data;
+    }
+
+    // Reads up to length bytes starting at offset, touching only the blocks that hold them.
+    // The blocks are found by binary search over the file's extents. A deflated file has to
+    // be inflated whole and an inline one has no blocks, so those are read whole.
+    public byte[] readFile(String filename, int offset, int length) throws Exception {
+        String path = normalize(filename);
+        ReentrantReadWriteLock lock = fileLocks.get(path);
+        if (lock == null) throw new Exception("ERROR: file " + filename + " does not exist");
+        if (offset < 0 || length < 0) throw new Exception("ERROR: invalid range");
+
+        markForeground();
+        lock.readLock().lock();
+        try {
+            FEntry entry;
+            ExtentMap map;
+            metadataLock.readLock().lock();
+            try {
+                int slot = findEntry(path, false);
+                entry = fentries[slot];
+                map = extentMaps[slot];
+            } finally {
+                metadataLock.readLock().unlock();
+            }
+            if (entry.isDeflated() || entry.isInline()) {
+                byte[] contents = readWhole(entry, map, filename);
+                int from = Math.min(offset, contents.length);
+                int to = (int) Math.min(contents.length, (long) from + length);
+                return Arrays.copyOfRange(contents, from, to);
+            }
+            // long: "the rest" may be Integer.MAX_VALUE
+            int end = (int) Math.min(entry.getStoredSize(), (long) offset + length);
+            if (offset >= end) return new byte[0];
+
+            int firstFileBlock = offset / BLOCK_SIZE;
+            int[] blocks = new int[(end - 1) / BLOCK_SIZE - firstFileBlock + 1];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = map.blockAt(firstFileBlock + i);
+            }
+            byte[] data = new byte[Math.min(blocks.length * BLOCK_SIZE, entry.getStoredSize() - firstFileBlock * BLOCK_SIZE)];
+            readBlocks(blocks, data, filename);
+            fileReads.incrementAndGet();
+            int from = offset - firstFileBlock * BLOCK_SIZE;
+            return Arrays.copyOfRange(data, from, from + (end - offset));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Fills data with the file's blocks, resolved up front and read in physical order.
+    // Adjacent blocks, and blocks separated by at most MAX_READ_GAP others, come in one
+    // positional read; every block is checked against its checksum before it is copied.
+    private void readBlocks(int[] blocks, byte[] data, String filename) throws Exception {
+        Integer[] order = new Integer[blocks.length];     // positions in the file, sorted by block index
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(blocks[a], blocks[b]));
+
+        int start = 0;
+        while (start < order.length) {
+            int end = start;
+            while (end + 1 < order.length && blocks[order[end + 1]] - blocks[order[end]] - 1 <= MAX_READ_GAP) end++;
+            int first = blocks[order[start]];
+            int span = blocks[order[end]] - first + 1;
+            byte[] run = new byte[span * BLOCK_SIZE];
+            readRun(first, run);
+
+            int previous = -1;
+            int distinct = 0;
+            for (int k = start; k <= end; k++) {
+                int position = order[k];
+                int blockIndex = blocks[position];
+                int offset = (blockIndex - first) * BLOCK_SIZE;
+                if (blockIndex != previous) distinct++;     // a deduplicated file can hold one block twice
+                previous = blockIndex;
+                if (!checksums.verify(blockIndex, run, offset)) {
+                    throw new Exception("ERROR: block " + blockIndex + " of " + filename + " is corrupt");
+                }
+                int toCopy = Math.min(BLOCK_SIZE, data.length - position * BLOCK_SIZE);
+                System.arraycopy(run, offset, data, position * BLOCK_SIZE, toCopy);
+            }
+            readIos.incrementAndGet();
+            blocksRead.addAndGet(span);
+            gapBlocksRead.addAndGet(span - distinct);
+            start = end + 1;
+        }
+    }
+
+    // Lists the root directory
     public String[] listFiles() {
         metadataLock.readLock().lock();
         try {
-            List<String> files = new ArrayList<>();
-            for (FEntry entry : fentries) {
-                if (!entry.getFilename().isEmpty()) {
-                    files.add(entry.getFilename());
-                }
+            return directoryIndex.list(FEntry.ROOT).toArray(new String[0]);
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    // Lists one directory in name order; subdirectories carry a trailing '/'
+    public String[] listDirectory(String path) throws Exception {
+        String normalized = normalize(path);
+        metadataLock.readLock().lock();
+        try {
+            Integer slot = directoryIndex.resolve(normalized);
+            if (slot == null || (slot != FEntry.ROOT && !directoryIndex.isDirectory(slot))) {
+                throw new Exception("ERROR: directory " + path + " does not exist");
             }
-            return files.toArray(new String[0]);
+            return directoryIndex.list(slot).toArray(new String[0]);
         } finally {
             metadataLock.readLock().unlock();
         }
     }
 
-    // Finds the index of a free FNode
-    private int findFreeNode() throws Exception {
-        for (int i = 0; i < fnodes.length; i++) {
-            if (fnodes[i] == null || fnodes[i].getBlockIndex() < 0) {
+    // Finds the index of a free extent record
+    private int findFreeExtent() throws Exception {
+        for (int i = 0; i < fextents.length; i++) {
+            if (fextents[i].isFree()) {
                 return i;
             }
         }
-        throw new Exception("ERROR: no free nodes available");
+        throw new Exception("ERROR: no free extents available");
+    }
+
+    // Turns content deduplication on or off. Enabling it indexes the blocks already stored;
+    // blocks that were duplicated before stay separate copies.
+    public void setDeduplication(boolean enabled) throws Exception {
+        metadataLock.writeLock().lock();
+        try {
+            if (enabled && !deduplication) {
+                byte[] block = new byte[BLOCK_SIZE];
+                for (int i = firstDataBlock(); i < MAXBLOCKS; i++) {
+                    if (blockRefs[i] == 0) continue;
+                    readBlock(i, block, 0, BLOCK_SIZE);
+                    deduplicator.register(i, deduplicator.hash(block, 0, BLOCK_SIZE));
+                }
+            } else if (!enabled) {
+                deduplicator.clear();
+            }
+            deduplication = enabled;
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+    }
+
+    // Reports the space deduplication currently saves and the hashing it cost
+    public DeduplicationStats getDeduplicationStats() {
+        metadataLock.readLock().lock();
+        try {
+            int logical = 0, physical = 0;
+            for (int refs : blockRefs) {
+                logical += refs;
+                if (refs > 0) physical++;
+            }
+            return new DeduplicationStats(logical, physical, BLOCK_SIZE, deduplicator.getSharedWrites(),
+                    deduplicator.getHashedBytes(), deduplicator.getHashNanos());
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    // Reports bytes kept off the disk by compression against the CPU time it cost
+    public CompressionStats getCompressionStats() {
+        return compressor.getStats(BLOCK_SIZE);
+    }
+
+    // Returns a snapshot of how scattered the stored files are across the volume
+    public FragmentationStats getFragmentationStats() {
+        metadataLock.readLock().lock();
+        try {
+            int files = 0, fragmentedFiles = 0, fragments = 0, usedBlocks = 0;
+            for (int slot = 0; slot < fentries.length; slot++) {
+                if (fentries[slot].getFilename().isEmpty() || fentries[slot].isDirectory()) continue;
+                files++;
+                int runs = extentMaps[slot].getExtentCount();
+                fragments += runs;
+                if (runs > 1) fragmentedFiles++;
+            }
+            int dataBlocks = 0, largestFreeRun = 0, run = 0;
+            for (int i = firstDataBlock(); i < MAXBLOCKS; i++) {
+                dataBlocks++;
+                if (freeBlockList[i]) {
+                    usedBlocks++;
+                    run = 0;
+                } else {
+                    largestFreeRun = Math.max(largestFreeRun, ++run);
+                }
+            }
+            return new FragmentationStats(files, fragmentedFiles, fragments, usedBlocks,
+                    dataBlocks - usedBlocks, largestFreeRun, blocksMoved.get());
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    // Moves the most fragmented file into a contiguous free run.
+    // Never waits on a busy file: returns false if nothing could be compacted right now.
+    public boolean compactNextFile() throws Exception {
+        String candidate = null;
+        int candidateSlot = -1;
+        int blocksNeeded = 0;
+        metadataLock.readLock().lock();
+        try {
+            int mostRuns = 1;
+            for (int slot = 0; slot < fentries.length; slot++) {
+                FEntry entry = fentries[slot];
+                if (entry.getFilename().isEmpty() || entry.isDirectory()) continue;
+                int[] blocks = extentMaps[slot].blocks();
+                int runs = extentMaps[slot].getExtentCount();
+                if (runs > mostRuns && !hasSharedBlocks(blocks) && findFreeRun(blocks.length) != -1) {
+                    mostRuns = runs;
+                    candidateSlot = slot;
+                    blocksNeeded = blocks.length;
+                }
+            }
+            if (candidateSlot != -1) candidate = pathOf(candidateSlot);
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+        if (candidate == null) return false;
+
+        ReentrantReadWriteLock lock = fileLocks.get(candidate);
+        if (lock == null || !lock.writeLock().tryLock()) return false;   // foreground owns the file, retry later
+        try {
+            // reserve the target run under the metadata lock, copy without it, then relink
+            int[] oldBlocks;
+            int start;
+            metadataLock.writeLock().lock();
+            try {
+                collectReclaimedBlocks();
+                Integer slot = directoryIndex.resolve(candidate);
+                if (slot == null || slot != candidateSlot) return false;   // deleted or replaced meanwhile
+
+                oldBlocks = extentMaps[slot].blocks();
+                start = findFreeRun(oldBlocks.length);
+                if (oldBlocks.length != blocksNeeded || extentMaps[slot].getExtentCount() < 2
+                        || hasSharedBlocks(oldBlocks) || start == -1) return false;
+                for (int i = 0; i < oldBlocks.length; i++) {
+                    freeBlockList[start + i] = true;    // unreferenced until relinked, so the scrubber skips them
+                }
+            } finally {
+                metadataLock.writeLock().unlock();
+            }
+
+            // copy first, then swap in a single extent, so a crash leaves the old extents intact;
+            // the file's write lock keeps its blocks from changing meanwhile
+            boolean copied = false;
+            try {
+                byte[] buffer = new byte[BLOCK_SIZE];
+                for (int i = 0; i < oldBlocks.length; i++) {
+                    readBlock(oldBlocks[i], buffer, 0, BLOCK_SIZE);
+                    // never give a corrupt block a fresh checksum
+                    if (!checksums.matches(oldBlocks[i], buffer, 0)) return false;
+                    writeBlock(start + i, buffer, 0);
+                }
+                copied = true;
+            } finally {
+                if (!copied) releaseRun(start, oldBlocks.length);
+            }
+
+            metadataLock.writeLock().lock();
+            try {
+                if (hasSharedBlocks(oldBlocks)) {   // deduplication started sharing one of them meanwhile
+                    releaseRun(start, oldBlocks.length);
+                    return false;
+                }
+                int slot = candidateSlot;
+                FEntry entry = fentries[slot];
+                for (int extent : extentsOf(entry)) {
+                    fextents[extent].reset();
+                }
+                int[] newBlocks = new int[oldBlocks.length];
+                for (int i = 0; i < oldBlocks.length; i++) {
+                    newBlocks[i] = start + i;
+                    blockRefs[start + i] = 1;
+                    blockRefs[oldBlocks[i]] = 0;
+                    deduplicator.move(oldBlocks[i], start + i);
+                }
+                entry.setFirstBlock((short) -1);
+                linkExtents(entry, newBlocks);
+                extentMaps[slot] = mapOf(entry);
+                saveMetadata();
+                for (int oldBlock : oldBlocks) {
+                    reclaimer.release(oldBlock);
+                }
+            } finally {
+                metadataLock.writeLock().unlock();
+            }
+            blocksMoved.addAndGet(oldBlocks.length);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Hands a reserved run that will not be linked to the reclaimer (it may hold copied data)
+    private void releaseRun(int start, int length) {
+        metadataLock.writeLock().lock();
+        try {
+            for (int i = 0; i < length; i++) {
+                reclaimer.release(start + i);
+            }
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
     }
 
-    // Writes a block of data to the specified block index on disk
+    // Re-reads the next stored data block and checks it against its checksum.
+    // Returns false only if the block turned out to be corrupt.
+    public boolean scrubNextBlock() throws Exception {
+        metadataLock.readLock().lock();     // keeps writers from rewriting blocks mid-check
+        try {
+            int dataBlocks = MAXBLOCKS - firstDataBlock();
+            for (int step = 0; step < dataBlocks; step++) {
+                int blockIndex = firstDataBlock() + scrubCursor;
+                scrubCursor = (scrubCursor + 1) % dataBlocks;
+                if (blockRefs[blockIndex] == 0) continue;
+                byte[] block = new byte[BLOCK_SIZE];
+                readBlock(blockIndex, block, 0, BLOCK_SIZE);
+                return checksums.scrub(blockIndex, block);
+            }
+            return true;    // nothing stored
+        } finally {
+            metadataLock.readLock().unlock();
+        }
+    }
+
+    // Reports how many disk reads whole-file reads took
+    public ReadStats getReadStats() {
+        return new ReadStats(fileReads.get(), blocksRead.get(), readIos.get(), gapBlocksRead.get(), inlineReads.get());
+    }
+
+    // Reports checksum verification cost and corruption found
+    public ChecksumStats getChecksumStats() {
+        return checksums.getStats(BLOCK_SIZE);
+    }
+
+    // Number of freed blocks that are still waiting to be zeroed
+    public int getPendingReclamation() {
+        return reclaimer.getPendingBlocks();
+    }
+
+    // Zeroes every block freed so far on the caller's thread
+    public void flushReclamation() throws Exception {
+        reclaimer.flush();
+    }
+
+    // Stops the reclaimer, once every freed block is zeroed, and closes the volume file
+    @Override
+    public void close() throws Exception {
+        reclaimer.stop();
+        metadataLock.writeLock().lock();
+        try {
+            synchronized (disk) {
+                disk.close();
+            }
+        } finally {
+            metadataLock.writeLock().unlock();
+        }
+    }
+
+    // Milliseconds since the last client-facing operation
+    public long getIdleMillis() {
+        return (System.nanoTime() - lastForegroundNanos) / 1_000_000;
+    }
+
+    private void markForeground() {
+        lastForegroundNanos = System.nanoTime();
+    }
+
+    // Canonical form of a path: no leading, trailing or repeated '/'
+    private String normalize(String path) {
+        StringBuilder normalized = new StringBuilder();
+        for (String name : path.split("/")) {
+            if (name.isEmpty()) continue;
+            if (normalized.length() > 0) normalized.append('/');
+            normalized.append(name);
+        }
+        return normalized.toString();
+    }
+
+    // Resolves a path to its entry slot (caller holds the metadata lock)
+    private int findEntry(String path, boolean allowDirectory) throws Exception {
+        Integer slot = directoryIndex.resolve(path);
+        if (slot == null || slot == FEntry.ROOT) throw new Exception("ERROR: file " + path + " does not exist");
+        if (!allowDirectory && fentries[slot].isDirectory()) throw new Exception("ERROR: " + path + " is a directory");
+        return slot;
+    }
+
+    // Rebuilds the full path of an entry from its parent links
+    private String pathOf(int slot) {
+        StringBuilder path = new StringBuilder(fentries[slot].getFilename());
+        int parent = fentries[slot].getParent();
+        for (int depth = 0; parent != FEntry.ROOT && depth < MAXFILES; depth++) {
+            path.insert(0, fentries[parent].getFilename() + "/");
+            parent = fentries[parent].getParent();
+        }
+        return path.toString();
+    }
+
+    // Unlinks a file's old extents, saves the metadata, then hands blocks whose last reference
+    // is gone to the reclaimer. The blocks stay marked as used until they have been zeroed.
+    private void releaseExtents(List<Integer> extents) throws Exception {
+        List<Integer> blocks = new ArrayList<>();
+        for (int extent : extents) {
+            for (int i = 0; i < fextents[extent].getLength(); i++) {
+                blocks.add(fextents[extent].getStartBlock() + i);
+            }
+            fextents[extent].reset();
+        }
+        saveMetadata();
+        for (int blockIndex : blocks) {
+            if (--blockRefs[blockIndex] == 0) {
+                deduplicator.forget(blockIndex);
+                reclaimer.release(blockIndex);
+            }
+        }
+    }
+
+    // True if any of the blocks is shared with another file
+    private boolean hasSharedBlocks(int[] blocks) {
+        for (int blockIndex : blocks) {
+            if (blockRefs[blockIndex] > 1) return true;
+        }
+        return false;
+    }
+
+    private int countFreeExtents() {
+        int free = 0;
+        for (FExtent extent : fextents) {
+            if (extent.isFree()) free++;
+        }
+        return free;
+    }
+
+    // Marks the blocks the reclaimer has finished with as free (caller holds the metadata write lock)
+    private void collectReclaimedBlocks() {
+        Integer blockIndex;
+        while ((blockIndex = reclaimer.pollReclaimed()) != null) {
+            freeBlockList[blockIndex] = false;
+        }
+    }
+
+    // Returns up to count free data blocks in ascending order
+    private List<Integer> findFreeBlocks(int count) {
+        collectReclaimedBlocks();
+        List<Integer> freeBlocks = new ArrayList<>();
+        for (int i = 0; i < freeBlockList.length && freeBlocks.size() < count; i++) {
+            if (!freeBlockList[i]) freeBlocks.add(i);
+        }
+        return freeBlocks;
+    }
+
+    // Collects the extent record indices of a file in order, stopping at a damaged record
+    private List<Integer> extentsOf(FEntry entry) {
+        List<Integer> extents = new ArrayList<>();
+        int extent = entry.getFirstBlock();
+        while (extent >= 0 && extent < MAXBLOCKS && !fextents[extent].isFree() && extents.size() < MAXBLOCKS) {
+            FExtent record = fextents[extent];
+            if (record.getStartBlock() < firstDataBlock() || record.getStartBlock() + record.getLength() > MAXBLOCKS) break;
+            extents.add(extent);
+            extent = record.getNext();
+        }
+        return extents;
+    }
+
+    // Builds the lookup view of a file's extents
+    private ExtentMap mapOf(FEntry entry) {
+        List<Integer> extents = extentsOf(entry);
+        int[] starts = new int[extents.size()];
+        int[] lengths = new int[extents.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = fextents[extents.get(i)].getStartBlock();
+            lengths[i] = fextents[extents.get(i)].getLength();
+        }
+        return new ExtentMap(starts, lengths);
+    }
+
+    // Stores the blocks (in file order) as extents of physically adjacent blocks and links
+    // them to the entry; the caller has checked there are enough free extent records
+    private void linkExtents(FEntry entry, int[] blocks) throws Exception {
+        int previous = -1;
+        int i = 0;
+        while (i < blocks.length) {
+            int length = 1;
+            while (i + length < blocks.length && blocks[i + length] == blocks[i] + length) length++;
+            int extent = findFreeExtent();
+            fextents[extent] = new FExtent((short) blocks[i], (short) length);
+            if (previous != -1) {
+                fextents[previous].setNext((short) extent);
+            } else {
+                entry.setFirstBlock((short) extent);
+            }
+            previous = extent;
+            i += length;
+        }
+    }
+
+    // Follows a node chain of a volume written before extents existed
+    private int[] legacyBlocks(FEntry entry, FNode[] nodes) {
+        List<Integer> blocks = new ArrayList<>();
+        int node = entry.getFirstBlock();
+        while (node >= 0 && node < MAXBLOCKS && blocks.size() < MAXBLOCKS) {
+            int blockIndex = nodes[node].getBlockIndex();
+            if (blockIndex < firstDataBlock() || blockIndex >= MAXBLOCKS) break;
+            blocks.add(blockIndex);
+            node = nodes[node].getNext();
+        }
+        int[] result = new int[blocks.size()];
+        for (int i = 0; i < result.length; i++) result[i] = blocks.get(i);
+        return result;
+    }
+
+    // Counts runs of physically adjacent blocks (1 means contiguous)
+    private int countRuns(int[] blocks) {
+        int runs = 0;
+        int previous = -2;
+        for (int blockIndex : blocks) {
+            if (blockIndex != previous + 1) runs++;
+            previous = blockIndex;
+        }
+        return runs;
+    }
+
+    // Finds the first run of free data blocks of the given length, or -1
+    private int findFreeRun(int length) {
+        int run = 0;
+        for (int i = firstDataBlock(); i < MAXBLOCKS; i++) {
+            run = freeBlockList[i] ? 0 : run + 1;
+            if (run == length) return i - length + 1;
+        }
+        return -1;
+    }
+
+    // First block index after the reserved metadata blocks
+    private int firstDataBlock() {
+        int metadataBytes = HEADER_SIZE + (MAXFILES * FEntry.SIZE) + (MAXBLOCKS * FExtent.SIZE) + (MAXBLOCKS * 4);
+        return (int) Math.ceil((double) metadataBytes / BLOCK_SIZE);
+    }
+
+    // Reads up to one block from the specified block index on disk. Whatever lies past the
+    // end of the disk file reads as zeroes, as in readRun, so a reused buffer never carries
+    // the previous block's bytes into a checksum or hash.
+    private void readBlock(int blockIndex, byte[] data, int offset, int length) throws Exception {
+        int done = 0;
+        synchronized (disk) {
+            disk.seek((long) blockIndex * BLOCK_SIZE);
+            while (done < length) {
+                int read = disk.read(data, offset + done, length - done);
+                if (read < 0) break;
+                done += read;
+            }
+        }
+        Arrays.fill(data, offset + done, offset + length, (byte) 0);
+    }
+
+    // Reads a run of adjacent blocks with one positional read. Positional reads leave the
+    // file pointer alone, so they do not need the lock that seek-based block I/O takes.
+    private void readRun(int firstBlock, byte[] buffer) throws Exception {
+        ByteBuffer target = ByteBuffer.wrap(buffer);
+        long position = (long) firstBlock * BLOCK_SIZE;
+        while (target.hasRemaining()) {
+            if (disk.getChannel().read(target, position + target.position()) < 0) break;  // past the end reads as zeroes
+        }
+    }
+
+    // Writes a full block to the specified block index on disk and records its checksum.
+    // A short tail is zero-padded so identical blocks hash and checksum identically.
     private void writeBlock(int blockIndex, byte[] data, int offset) throws Exception {
-        disk.seek(blockIndex * BLOCK_SIZE);
-        int length = Math.min(BLOCK_SIZE, data.length - offset);
-        disk.write(data, offset, length);
+        byte[] block = new byte[BLOCK_SIZE];
+        System.arraycopy(data, offset, block, 0, Math.min(BLOCK_SIZE, data.length - offset));
+        synchronized (disk) {
+            disk.seek((long) blockIndex * BLOCK_SIZE);
+            disk.write(block);
+        }
+        checksums.record(blockIndex, block);
     }
 
-    // Overwrites a block with zeroed bytes (used during deletion)
-    private void overwriteBlock(int blockIndex) throws Exception {
-        disk.seek(blockIndex * BLOCK_SIZE);
-        disk.write(new byte[BLOCK_SIZE]);
+    // Overwrites a run of adjacent blocks with zeroed bytes in a single write (used by the reclaimer)
+    void zeroBlocks(int firstBlock, int count) throws Exception {
+        synchronized (disk) {
+            disk.seek((long) firstBlock * BLOCK_SIZE);
+            disk.write(zeroes, 0, count * BLOCK_SIZE);
+        }
     }
 }
@@ -0,0 +1,70 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Snapshot of how the stored files are laid out across the volume.
+ * A fragment is a run of physically adjacent blocks; a contiguous file has exactly one.
+ */
+public class FragmentationStats {
+
+    private final int files;
+    private final int fragmentedFiles;
+    private final int fragments;
+    private final int usedBlocks;
+    private final int freeBlocks;
+    private final int largestFreeRun;
+    private final long blocksMoved;
+
+    public FragmentationStats(int files, int fragmentedFiles, int fragments, int usedBlocks,
+                              int freeBlocks, int largestFreeRun, long blocksMoved) {
+        this.files = files;
+        this.fragmentedFiles = fragmentedFiles;
+        this.fragments = fragments;
+        this.usedBlocks = usedBlocks;
+        this.freeBlocks = freeBlocks;
+        this.largestFreeRun = largestFreeRun;
+        this.blocksMoved = blocksMoved;
+    }
+
+    // Getters
+    public int getFiles() {
+        return files;
+    }
+
+    public int getFragmentedFiles() {
+        return fragmentedFiles;
+    }
+
+    public int getFragments() {
+        return fragments;
+    }
+
+    public int getUsedBlocks() {
+        return usedBlocks;
+    }
+
+    public int getFreeBlocks() {
+        return freeBlocks;
+    }
+
+    public int getLargestFreeRun() {
+        return largestFreeRun;
+    }
+
+    public long getBlocksMoved() {
+        return blocksMoved;
+    }
+
+    @Override
+    public String toString() {
+        return "FragmentationStats{" +
+                "files=" + files +
+                ", fragmentedFiles=" + fragmentedFiles +
+                ", fragments=" + fragments +
+                ", usedBlocks=" + usedBlocks +
+                ", freeBlocks=" + freeBlocks +
+                ", largestFreeRun=" + largestFreeRun +
+                ", blocksMoved=" + blocksMoved +
+                '}';
+    }
+}
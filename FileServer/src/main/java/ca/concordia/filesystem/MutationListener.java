@@ -0,0 +1,16 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Receives every namespace and content change once it has been applied, while the
+ * file system still holds the locks that ordered it. Implementations must be quick
+ * and must not throw.
+ */
+public interface MutationListener {
+
+    void created(String path, boolean directory, boolean compressed);
+
+    void written(String path, byte[] contents);
+
+    void deleted(String path);
+}
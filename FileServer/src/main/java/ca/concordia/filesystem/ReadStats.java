@@ -0,0 +1,63 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Disk reads issued for whole-file reads. Coalescing adjacent blocks keeps the number of
+ * I/Os below the number of blocks; bridging short gaps trades a few unused blocks for
+ * fewer I/Os on fragmented files. Files small enough to live in their entry need none.
+ */
+public class ReadStats {
+
+    private final long fileReads;
+    private final long blocksRead;
+    private final long ios;
+    private final long gapBlocksRead;
+    private final long inlineReads;
+
+    public ReadStats(long fileReads, long blocksRead, long ios, long gapBlocksRead, long inlineReads) {
+        this.fileReads = fileReads;
+        this.blocksRead = blocksRead;
+        this.ios = ios;
+        this.gapBlocksRead = gapBlocksRead;
+        this.inlineReads = inlineReads;
+    }
+
+    // Getters
+    public long getFileReads() {
+        return fileReads;
+    }
+
+    public long getBlocksRead() {
+        return blocksRead;
+    }
+
+    public long getIos() {
+        return ios;
+    }
+
+    public long getGapBlocksRead() {
+        return gapBlocksRead;
+    }
+
+    // File reads served from the entry itself, with no block I/O
+    public long getInlineReads() {
+        return inlineReads;
+    }
+
+    // Average disk reads per file read (1.0 means every file came in a single I/O)
+    public double getIosPerFileRead() {
+        return fileReads == 0 ? 0 : (double) ios / fileReads;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadStats{" +
+                "fileReads=" + fileReads +
+                ", ios=" + ios +
+                ", blocksRead=" + blocksRead +
+                ", gapBlocksRead=" + gapBlocksRead +
+                ", inlineReads=" + inlineReads +
+                ", iosPerFileRead=" + String.format("%.2f", getIosPerFileRead()) +
+                '}';
+    }
+}
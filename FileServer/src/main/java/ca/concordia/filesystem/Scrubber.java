@@ -0,0 +1,73 @@
+package ca.concordia.filesystem;
+
+
+/**
+ * Low-priority background verifier. It walks the stored data blocks round-robin,
+ * re-reading each one and checking it against its CRC32C, at a fixed number of
+ * blocks per second so scrubbing never competes with clients for the disk.
+ */
+public class Scrubber {
+
+    private final FileSystemManager fsManager;
+    private final int blocksPerSecond;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public Scrubber(FileSystemManager fsManager) {
+        this(fsManager, 4);
+    }
+
+    public Scrubber(FileSystemManager fsManager, int blocksPerSecond) {
+        this.fsManager = fsManager;
+        this.blocksPerSecond = Math.max(1, blocksPerSecond);
+    }
+
+    // Starts the scrubber on a daemon thread
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this::run, "scrubber");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    // Stops the scrubber and waits for the current block to finish
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join();
+            worker = null;
+        }
+    }
+
+    // Checks the given number of blocks; returns how many of them were corrupt
+    public int runOnce(int blocks) {
+        int corrupt = 0;
+        try {
+            for (int i = 0; i < blocks; i++) {
+                if (!fsManager.scrubNextBlock()) corrupt++;
+            }
+        } catch (Exception e) {
+            System.err.println("Scrubber error: " + e.getMessage());
+        }
+        if (corrupt > 0) {
+            System.err.println("Scrubber found " + corrupt + " corrupt block(s): " + fsManager.getChecksumStats());
+        }
+        return corrupt;
+    }
+
+    private void run() {
+        long intervalMillis = 1000 / blocksPerSecond;
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            runOnce(1);
+        }
+    }
+}
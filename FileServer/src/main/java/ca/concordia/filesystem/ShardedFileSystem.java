@@ -0,0 +1,252 @@
+package ca.concordia.filesystem;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Spreads the namespace over several volumes, each with its own FileSystemManager, disk
+ * file and locks. A path is placed by consistent hashing of its top-level name, so a
+ * directory and everything below it live on one shard and only a root LIST has to ask
+ * every shard. When the shard count changes, mounting moves every top-level entry that
+ * now hashes elsewhere (including those on volumes beyond the new count) to its new owner.
+ */
+public class ShardedFileSystem implements AutoCloseable {
+
+    private static final int VIRTUAL_NODES = 64;   // ring points per shard, smooths the distribution
+
+    private final FileSystemManager[] shards;
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+    // Single volume, same behaviour as a bare FileSystemManager
+    public ShardedFileSystem(String filename, int totalSize) {
+        this(filename, totalSize, 1);
+    }
+
+    // Shard 0 uses the given file name; shard i uses the name with "-i" before the extension
+    public ShardedFileSystem(String filename, int totalSize, int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("Shard count must be at least 1.");
+        shards = new FileSystemManager[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new FileSystemManager(volumeName(filename, i), totalSize);
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                ring.put(mix(("shard-" + i + "#" + v).hashCode()), i);
+            }
+        }
+        try {
+            rebalance(filename, totalSize);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to move files to their shards", e);
+        }
+    }
+
+    // Moves entries left on the wrong shard by a different shard count to the shards that own
+    // them now. Volumes left over from a larger count are removed once they have been drained.
+    private void rebalance(String filename, int totalSize) throws Exception {
+        List<FileSystemManager> leftovers = new ArrayList<>();
+        try {
+            for (int i = shards.length; Files.exists(Path.of(volumeName(filename, i))); i++) {
+                leftovers.add(new FileSystemManager(volumeName(filename, i), totalSize));
+            }
+            List<FileSystemManager> volumes = new ArrayList<>(Arrays.asList(shards));
+            volumes.addAll(leftovers);
+            for (int i = 0; i < volumes.size(); i++) {
+                FileSystemManager source = volumes.get(i);
+                for (String name : source.listFiles()) {
+                    int owner = shardIndex(name);
+                    if (owner != i) moveTree(source, shards[owner], name);
+                }
+            }
+        } finally {
+            for (FileSystemManager leftover : leftovers) leftover.close();
+        }
+        for (int i = shards.length + leftovers.size() - 1; i >= shards.length; i--) {
+            Files.delete(Path.of(volumeName(filename, i)));     // highest first, so a crash leaves no gap
+        }
+    }
+
+    // Copies a top-level file or directory tree to the shard that owns it, then removes the
+    // original. A crash in between leaves the entry on both shards, and the next mount simply
+    // finishes the move: whatever the owner lacks is copied, an identical copy counts as done,
+    // and where the two differ the copy being moved wins. The owner's copy can only differ if
+    // the move had not finished writing it, or if it was created there while the shard count
+    // was different; in both cases the original is the one to keep.
+    private static void moveTree(FileSystemManager source, FileSystemManager target, String name) throws Exception {
+        List<String> paths = treeOf(source, name);
+        for (String path : paths) {
+            if (path.endsWith("/")) {
+                if (target.exists(path) && !isDirectory(target, path)) target.deleteFile(path);
+                if (!target.exists(path)) target.makeDirectory(path);
+                continue;
+            }
+            boolean compressed = source.isCompressed(path);
+            byte[] contents = source.readFile(path);
+            if (target.exists(path)) {
+                if (isDirectory(target, path)) {
+                    deleteTree(target, path + "/");
+                } else if (target.isCompressed(path) == compressed && Arrays.equals(target.readFile(path), contents)) {
+                    continue;   // copied before an interrupted move
+                } else {
+                    target.deleteFile(path);
+                }
+            }
+            target.createFile(path, compressed);
+            target.writeFile(path, contents);
+        }
+        deleteTree(source, name);
+    }
+
+    // A top-level entry and, for a directory, everything below it; parents before their contents
+    private static List<String> treeOf(FileSystemManager shard, String name) throws Exception {
+        List<String> paths = new ArrayList<>();
+        paths.add(name);
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            if (path.endsWith("/")) {
+                for (String child : shard.listDirectory(path)) paths.add(path + child);
+            }
+        }
+        return paths;
+    }
+
+    // Deletes a file or a whole directory tree, contents before their directories
+    private static void deleteTree(FileSystemManager shard, String name) throws Exception {
+        List<String> paths = treeOf(shard, name);
+        for (int i = paths.size() - 1; i >= 0; i--) shard.deleteFile(paths.get(i));
+    }
+
+    private static boolean isDirectory(FileSystemManager shard, String path) {
+        try {
+            shard.listDirectory(path);
+            return true;
+        } catch (Exception e) {
+            return false;   // a file (listing one is refused)
+        }
+    }
+
+    public void createFile(String filename) throws Exception {
+        shardFor(filename).createFile(filename);
+    }
+
+    public void createFile(String filename, boolean compressed) throws Exception {
+        shardFor(filename).createFile(filename, compressed);
+    }
+
+    public void makeDirectory(String path) throws Exception {
+        shardFor(path).makeDirectory(path);
+    }
+
+    public void deleteFile(String filename) throws Exception {
+        shardFor(filename).deleteFile(filename);
+    }
+
+    public void writeFile(String filename, byte[] contents) throws Exception {
+        shardFor(filename).writeFile(filename, contents);
+    }
+
+    public byte[] readFile(String filename) throws Exception {
+        return shardFor(filename).readFile(filename);
+    }
+
+    public byte[] readFile(String filename, int offset, int length) throws Exception {
+        return shardFor(filename).readFile(filename, offset, length);
+    }
+
+    // Lists the root directory by merging every shard's listing in name order
+    public String[] listFiles() {
+        List<String> files = new ArrayList<>();
+        for (FileSystemManager shard : shards) {
+            files.addAll(Arrays.asList(shard.listFiles()));
+        }
+        Collections.sort(files);
+        return files.toArray(new String[0]);
+    }
+
+    // Lists one directory; below the root a directory lives on a single shard
+    public String[] listDirectory(String path) throws Exception {
+        if (topLevelName(path).isEmpty()) return listFiles();
+        return shardFor(path).listDirectory(path);
+    }
+
+    public boolean exists(String path) {
+        return shardFor(path).exists(path);
+    }
+
+    public boolean isCompressed(String filename) throws Exception {
+        return shardFor(filename).isCompressed(filename);
+    }
+
+    // Every path in the namespace, each directory (with a trailing '/') before its contents
+    public List<String> listTree() throws Exception {
+        List<String> paths = new ArrayList<>();
+        collectTree("", paths);
+        return paths;
+    }
+
+    private void collectTree(String directory, List<String> paths) throws Exception {
+        for (String name : listDirectory(directory)) {
+            String path = directory + name;
+            paths.add(path);
+            if (name.endsWith("/")) collectTree(path, paths);
+        }
+    }
+
+    // Registers the same mutation listener on every shard
+    public void setMutationListener(MutationListener listener) {
+        for (FileSystemManager shard : shards) {
+            shard.setMutationListener(listener);
+        }
+    }
+
+    // Closes every shard's volume
+    @Override
+    public void close() throws Exception {
+        for (FileSystemManager shard : shards) {
+            shard.close();
+        }
+    }
+
+    public FileSystemManager[] getShards() {
+        return shards.clone();
+    }
+
+    // Picks the shard that owns a path
+    public FileSystemManager shardFor(String path) {
+        return shards[shardIndex(path)];
+    }
+
+    public int shardIndex(String path) {
+        if (shards.length == 1) return 0;
+        Map.Entry<Integer, Integer> owner = ring.ceilingEntry(mix(topLevelName(path).hashCode()));
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    private static String topLevelName(String path) {
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) return name;
+        }
+        return "";
+    }
+
+    private static String volumeName(String filename, int shard) {
+        if (shard == 0) return filename;
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? filename + "-" + shard : filename.substring(0, dot) + "-" + shard + filename.substring(dot);
+    }
+
+    // Murmur3 finalizer: spreads String.hashCode() over the whole ring
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
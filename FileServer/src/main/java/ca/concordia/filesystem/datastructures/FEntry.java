@@ -5,14 +5,48 @@ import java.nio.ByteBuffer;
 
 public class FEntry {
 
+    // On-disk record sizes: the original layout had no parent link or flags,
+    // the second one no stored size, the third no inline data
+    public static final int SIZE = 30;
+    public static final int V3_SIZE = 20;
+    public static final int V2_SIZE = 18;
+    public static final int LEGACY_SIZE = 15;
+
+    // Flag bits
+    public static final byte DIRECTORY = 1;
+    public static final byte COMPRESS = 2;     // the file opted in to compression
+    public static final byte DEFLATED = 4;     // the stored bytes are currently deflated
+    public static final byte INLINE = 8;       // the stored bytes live in the entry, not in data blocks
+
+    // Files whose stored bytes fit here are kept in the entry itself
+    public static final int INLINE_CAPACITY = 10;
+
+    // Parent of entries that live directly in the root directory
+    public static final short ROOT = -1;
+
     private String filename;
     private short filesize;
-    private short firstBlock;
+    private short firstBlock;   // first extent record (first FNode before version 5 volumes)
+    private short parent;
+    private byte flags;
+    private short storedSize;   // bytes in the file's blocks; differs from filesize when deflated
+    private byte[] inlineData = new byte[0];
 
     public FEntry(String filename, short filesize, short firstBlock) {
+        this(filename, filesize, firstBlock, ROOT, (byte) 0);
+    }
+
+    public FEntry(String filename, short filesize, short firstBlock, short parent, byte flags) {
+        this(filename, filesize, firstBlock, parent, flags, filesize);
+    }
+
+    public FEntry(String filename, short filesize, short firstBlock, short parent, byte flags, short storedSize) {
         setFilename(filename);
         setFilesize(filesize);
         this.firstBlock = firstBlock;
+        this.parent = parent;
+        this.flags = flags;
+        this.storedSize = storedSize;
     }
 
     // create empty entry (used for uninitialized slots)
@@ -20,6 +54,9 @@ public class FEntry {
         this.filename = "";
         this.filesize = 0;
         this.firstBlock = -1;   // no data block are linked
+        this.parent = ROOT;
+        this.flags = 0;
+        this.storedSize = 0;
     }
 
     // Getters
@@ -35,6 +72,34 @@ public class FEntry {
         return firstBlock;
     }
 
+    public short getParent() {
+        return parent;
+    }
+
+    public boolean isDirectory() {
+        return (flags & DIRECTORY) != 0;
+    }
+
+    public boolean isCompressed() {
+        return (flags & COMPRESS) != 0;
+    }
+
+    public boolean isDeflated() {
+        return (flags & DEFLATED) != 0;
+    }
+
+    public short getStoredSize() {
+        return storedSize;
+    }
+
+    public boolean isInline() {
+        return (flags & INLINE) != 0;
+    }
+
+    public byte[] getInlineData() {
+        return inlineData.clone();
+    }
+
     // Setters
     public void setFilename(String filename) {
         if (filename.length() > 11) {
@@ -54,26 +119,71 @@ public class FEntry {
         this.firstBlock = firstBlock;
     }
 
+    public void setParent(short parent) {
+        this.parent = parent;
+    }
+
+    public void setDirectory(boolean directory) {
+        setFlag(DIRECTORY, directory);
+    }
+
+    public void setCompressed(boolean compressed) {
+        setFlag(COMPRESS, compressed);
+    }
+
+    public void setDeflated(boolean deflated) {
+        setFlag(DEFLATED, deflated);
+    }
+
+    public void setStoredSize(short storedSize) {
+        if (storedSize < 0) {
+            throw new IllegalArgumentException("Stored size cannot be negative.");
+        }
+        this.storedSize = storedSize;
+    }
+
+    // Keeps the stored bytes in the entry (null moves the file back to data blocks)
+    public void setInlineData(byte[] data) {
+        if (data != null && data.length > INLINE_CAPACITY) {
+            throw new IllegalArgumentException("Inline data cannot be longer than " + INLINE_CAPACITY + " bytes.");
+        }
+        this.inlineData = data == null ? new byte[0] : data.clone();
+        setFlag(INLINE, data != null);
+    }
+
+    private void setFlag(byte flag, boolean value) {
+        this.flags = (byte) (value ? flags | flag : flags & ~flag);
+    }
+
     // clear entry (used during file deletion)
     public void reset() {
         this.filename = "";
         this.filesize = 0;
         this.firstBlock = -1;
+        this.parent = ROOT;
+        this.flags = 0;
+        this.storedSize = 0;
+        this.inlineData = new byte[0];
     }
 
-    // Serialization: converts FEntry into 15-byte array
+    // Serialization: converts FEntry into 30-byte array
     public byte[] toBytes() {
-        ByteBuffer buffer = ByteBuffer.allocate(15);
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
         byte[] nameBytes = new byte[11];
         byte[] rawName = filename.getBytes();
         System.arraycopy(rawName, 0, nameBytes, 0, Math.min(rawName.length, 11));
         buffer.put(nameBytes);
         buffer.putShort(filesize);
         buffer.putShort(firstBlock);
+        buffer.putShort(parent);
+        buffer.put(flags);
+        buffer.putShort(storedSize);
+        buffer.put(inlineData);     // rest of the inline area stays zeroed
         return buffer.array();
     }
 
-    //Deserialization: reconstructs FEntry from 15-byte array (Used to load metadata from disk)
+    //Deserialization: reconstructs FEntry from a 30-byte array, or a 20/18/15-byte record
+    //of an older volume (Used to load metadata from disk)
     public static FEntry fromBytes(byte[] data) {
         ByteBuffer buffer = ByteBuffer.wrap(data);
         byte[] nameBytes = new byte[11];
@@ -81,7 +191,24 @@ public class FEntry {
         String name = new String(nameBytes).trim();
         short size = buffer.getShort();
         short firstBlock = buffer.getShort();
-        return new FEntry(name, size, firstBlock);
+        if (data.length < V2_SIZE) {
+            return new FEntry(name, size, firstBlock);  // legacy entries all live in the root
+        }
+        short parent = buffer.getShort();
+        byte flags = buffer.get();
+        if (data.length < V3_SIZE) {
+            return new FEntry(name, size, firstBlock, parent, flags);   // stored uncompressed
+        }
+        short storedSize = buffer.getShort();
+        FEntry entry = new FEntry(name, size, firstBlock, parent, flags, storedSize);
+        if (data.length < SIZE || storedSize < 0 || storedSize > INLINE_CAPACITY) {
+            entry.setFlag(INLINE, false);   // no inline area, or a damaged one
+        } else if (entry.isInline()) {
+            byte[] inline = new byte[storedSize];
+            buffer.get(inline);
+            entry.inlineData = inline;
+        }
+        return entry;
     }
 
     @Override
@@ -90,6 +217,11 @@ public class FEntry {
                 "filename='" + filename + '\'' +
                 ", filesize=" + filesize +
                 ", firstBlock=" + firstBlock +
+                ", parent=" + parent +
+                ", directory=" + isDirectory() +
+                ", compressed=" + isCompressed() +
+                ", storedSize=" + storedSize +
+                ", inline=" + isInline() +
                 '}';
     }
 }
\ No newline at end of file
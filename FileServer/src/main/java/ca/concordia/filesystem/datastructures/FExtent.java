@@ -0,0 +1,96 @@
+package ca.concordia.filesystem.datastructures;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * A run of physically adjacent data blocks belonging to one file. A file's extents
+ * are linked in file order through next, starting at its entry's first extent.
+ */
+public class FExtent {
+
+    // On-disk record size: start block, length and next extent, two bytes each
+    public static final int SIZE = 6;
+
+    private short startBlock;
+    private short length;
+    private short next;
+
+    // Default constructor
+    public FExtent() {
+        this.startBlock = -1;
+        this.length = 0;
+        this.next = -1;
+    }
+
+    public FExtent(short startBlock, short length) {
+        this(startBlock, length, (short) -1);
+    }
+
+    public FExtent(short startBlock, short length, short next) {
+        this.startBlock = startBlock;
+        this.length = length;
+        this.next = next;
+    }
+
+    // Getters
+    public short getStartBlock() {
+        return startBlock;
+    }
+
+    public short getLength() {
+        return length;
+    }
+
+    public short getNext() {
+        return next;
+    }
+
+    // True if the record is not part of any file
+    public boolean isFree() {
+        return startBlock < 0 || length <= 0;
+    }
+
+    // Setters
+    public void setStartBlock(short startBlock) {
+        this.startBlock = startBlock;
+    }
+
+    public void setNext(short next) {
+        this.next = next;
+    }
+
+    // Reset extent
+    public void reset() {
+        this.startBlock = -1;
+        this.length = 0;
+        this.next = -1;
+    }
+
+    // Serialize to bytes
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.putShort(startBlock);
+        buffer.putShort(length);
+        buffer.putShort(next);
+        return buffer.array();
+    }
+
+    // Deserialize from bytes (a zeroed record has no length and so reads as free)
+    public static FExtent fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        short startBlock = buffer.getShort();
+        short length = buffer.getShort();
+        short next = buffer.getShort();
+        return length > 0 ? new FExtent(startBlock, length, next) : new FExtent();
+    }
+
+    @Override
+    public String toString() {
+        return "FExtent{" +
+                "startBlock=" + startBlock +
+                ", length=" + length +
+                ", next=" + next +
+                '}';
+    }
+}
@@ -0,0 +1,124 @@
+package ca.concordia.server;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Bounds how many requests run at once. A request that finds every slot taken waits
+ * in a bounded queue; when a slot frees up it goes to the next client in round-robin
+ * order, so one client with many requests cannot starve the others. A request that
+ * finds the queue (or its client's share of it) full is turned away immediately.
+ */
+public class AdmissionController {
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final int maxQueuedPerClient;
+
+    // Guarded by this
+    private int inFlight;
+    private int queued;
+    private final Map<String, ArrayDeque<Ticket>> waiting = new HashMap<>();
+    private final ArrayDeque<String> turns = new ArrayDeque<>();    // clients with waiting requests, next first
+    private long admitted;
+    private long rejected;
+
+    private static class Ticket {
+        boolean granted;
+    }
+
+    public AdmissionController(int maxInFlight, int maxQueued, int maxQueuedPerClient) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxQueuedPerClient = Math.max(0, maxQueuedPerClient);
+    }
+
+    // Takes a slot for one request, waiting in the client's queue if needed.
+    // Returns false at once if the request cannot even be queued.
+    public synchronized boolean acquire(String client) throws InterruptedException {
+        if (inFlight < maxInFlight && queued == 0) {
+            inFlight++;
+            admitted++;
+            return true;
+        }
+        ArrayDeque<Ticket> queue = waiting.get(client);
+        if (queued >= maxQueued || (queue != null && queue.size() >= maxQueuedPerClient)) {
+            rejected++;
+            return false;
+        }
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            waiting.put(client, queue);
+            turns.addLast(client);
+        }
+        Ticket ticket = new Ticket();
+        queue.addLast(ticket);
+        queued++;
+        try {
+            while (!ticket.granted) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            if (ticket.granted) {
+                release();
+            } else {
+                queue.remove(ticket);
+                queued--;
+                if (queue.isEmpty()) {
+                    waiting.remove(client);
+                    turns.remove(client);
+                }
+            }
+            throw e;
+        }
+        admitted++;
+        return true;
+    }
+
+    // Gives a slot back and hands it to the next waiting client in turn
+    public synchronized void release() {
+        inFlight--;
+        String client = turns.pollFirst();
+        if (client == null) return;
+
+        ArrayDeque<Ticket> queue = waiting.get(client);
+        queue.pollFirst().granted = true;
+        queued--;
+        inFlight++;
+        if (queue.isEmpty()) {
+            waiting.remove(client);
+        } else {
+            turns.addLast(client);
+        }
+        notifyAll();
+    }
+
+    // Getters
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "AdmissionController{" +
+                "inFlight=" + inFlight + "/" + maxInFlight +
+                ", queued=" + queued + "/" + maxQueued +
+                ", admitted=" + admitted +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package ca.concordia.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+
+/**
+ * Shared pool of the per-connection I/O buffers, so a new connection reuses the
+ * buffers of one that has closed. Only buffers of the standard size are kept; one
+ * that had to grow for an oversized line is left to the garbage collector.
+ */
+class BufferPool {
+
+    static final int BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED = 128;
+
+    private static final ArrayBlockingQueue<byte[]> pool = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private BufferPool() {
+    }
+
+    static byte[] acquire() {
+        byte[] buffer = pool.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    static void release(byte[] buffer) {
+        if (buffer.length == BUFFER_SIZE) pool.offer(buffer);
+    }
+}
@@ -0,0 +1,241 @@
+package ca.concordia.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Reads newline-terminated commands straight from a client's stream into a pooled
+ * buffer and parses them in place. The opcode is matched without a case-folded copy
+ * and the filename and payload stay offsets into the buffer until asked for; recently
+ * seen filenames are handed back as the same String, so a request allocates nothing
+ * unless its line outgrows the buffer, it names a new file or it carries a payload.
+ *
+ * Tokens follow the old split(" ", 3) of the trimmed line: opcode, then the filename up
+ * to the next space, then everything after it.
+ */
+public class CommandParser implements AutoCloseable {
+
+    // Opcodes
+    public static final int UNKNOWN = 0;
+    public static final int CREATE = 1;
+    public static final int MKDIR = 2;
+    public static final int WRITE = 3;
+    public static final int READ = 4;
+    public static final int DELETE = 5;
+    public static final int LIST = 6;
+    public static final int REPLICATE = 7;
+    public static final int QUIT = 8;
+    private static final String[] NAMES = {"", "CREATE", "MKDIR", "WRITE", "READ", "DELETE", "LIST", "REPLICATE", "QUIT"};
+
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int NAME_CACHE_SIZE = 8;
+
+    private final InputStream in;
+    private byte[] buffer = BufferPool.acquire();
+    private int bufferStart;    // first byte not yet consumed
+    private int bufferEnd;      // end of the bytes read so far
+
+    // The current line (trimmed) and its tokens, as offsets into buffer; -1 when absent
+    private int lineStart, lineEnd;
+    private int opcode;
+    private int argStart, argEnd;
+    private int restStart, restEnd;
+
+    // Recently seen filenames, kept with their bytes so a repeat needs no new String
+    private final byte[][] nameBytes = new byte[NAME_CACHE_SIZE][];
+    private final String[] names = new String[NAME_CACHE_SIZE];
+    private int nextName;
+
+    public CommandParser(InputStream in) {
+        this.in = in;
+    }
+
+    // Reads and parses the next command; false once the client has closed the stream
+    public boolean next() throws IOException {
+        int newline = findNewline(bufferStart);
+        while (newline < 0) {
+            if (bufferEnd == buffer.length) makeRoom();
+            int read = in.read(buffer, bufferEnd, buffer.length - bufferEnd);
+            if (read < 0) {
+                if (bufferStart == bufferEnd) return false;
+                newline = bufferEnd;    // last line without a newline
+                break;
+            }
+            int searchFrom = bufferEnd;
+            bufferEnd += read;
+            newline = findNewline(searchFrom);
+        }
+        parse(bufferStart, newline);
+        bufferStart = Math.min(newline + 1, bufferEnd);
+        return true;
+    }
+
+    public int opcode() {
+        return opcode;
+    }
+
+    // Upper-case name of the opcode ("" if unknown); a constant, never a new String
+    public String opcodeName() {
+        return NAMES[opcode];
+    }
+
+    public boolean hasArgument() {
+        return argStart >= 0;
+    }
+
+    public boolean hasRest() {
+        return restStart >= 0;
+    }
+
+    // The filename token
+    public String argument() {
+        int length = argEnd - argStart;
+        for (int i = 0; i < NAME_CACHE_SIZE; i++) {
+            byte[] cached = nameBytes[i];
+            if (cached != null && Arrays.equals(cached, 0, cached.length, buffer, argStart, argEnd)) return names[i];
+        }
+        byte[] key = Arrays.copyOfRange(buffer, argStart, argEnd);
+        String name = new String(buffer, argStart, length, StandardCharsets.UTF_8);
+        nameBytes[nextName] = key;
+        names[nextName] = name;
+        nextName = (nextName + 1) % NAME_CACHE_SIZE;
+        return name;
+    }
+
+    // Length in chars of the last path component of the filename, ignoring one trailing '/'
+    public int argumentBaseNameLength() {
+        int end = argEnd;
+        if (end > argStart && buffer[end - 1] == '/') end--;
+        int chars = 0;
+        for (int i = end - 1; i >= argStart && buffer[i] != '/'; i--) {
+            int b = buffer[i] & 0xFF;
+            if ((b & 0xC0) != 0x80) chars += b >= 0xF0 ? 2 : 1;    // count lead bytes; 4-byte sequences are two chars
+        }
+        return chars;
+    }
+
+    // True if the text after the filename, trimmed, is the given word in any case
+    public boolean restIs(String word) {
+        int start = restStart, end = restEnd;
+        while (start < end && isBlank(buffer[start])) start++;
+        while (end > start && isBlank(buffer[end - 1])) end--;
+        if (end - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (!sameLetter(buffer[start + i], word.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    // The index-th space-separated token after the filename as a non-negative int, or -1
+    // if it is missing or not a number; parsed in place, so it allocates nothing
+    public int restNumber(int index) {
+        if (restStart < 0) return -1;
+        int start = restStart;
+        for (int i = 0; i <= index; i++) {
+            while (start < restEnd && buffer[start] == ' ') start++;
+            int end = indexOf(' ', start, restEnd);
+            if (end < 0) end = restEnd;
+            if (i == index) return parseNumber(start, end);
+            start = end;
+        }
+        return -1;
+    }
+
+    // The payload as its own array (it outlives the buffer, so it has to be copied)
+    public byte[] restBytes() {
+        return Arrays.copyOfRange(buffer, restStart, restEnd);
+    }
+
+    // Copies the raw command line to a stream (used for logging)
+    public void writeLine(OutputStream out) throws IOException {
+        out.write(buffer, lineStart, lineEnd - lineStart);
+    }
+
+    @Override
+    public void close() {
+        BufferPool.release(buffer);
+        buffer = new byte[0];
+    }
+
+    // Splits [from, to) into opcode, filename and rest
+    private void parse(int from, int to) {
+        while (from < to && isBlank(buffer[from])) from++;    // trim, as String.trim() did
+        while (to > from && isBlank(buffer[to - 1])) to--;
+        lineStart = from;
+        lineEnd = to;
+
+        int firstSpace = indexOf(' ', from, to);
+        opcode = matchOpcode(from, firstSpace < 0 ? to : firstSpace);
+        argStart = argEnd = restStart = restEnd = -1;
+        if (firstSpace < 0) return;
+
+        int secondSpace = indexOf(' ', firstSpace + 1, to);
+        argStart = firstSpace + 1;
+        argEnd = secondSpace < 0 ? to : secondSpace;
+        if (secondSpace < 0) return;
+        restStart = secondSpace + 1;
+        restEnd = to;
+    }
+
+    private int matchOpcode(int start, int end) {
+        for (int code = 1; code < NAMES.length; code++) {
+            String name = NAMES[code];
+            if (name.length() != end - start) continue;
+            int i = 0;
+            while (i < name.length() && sameLetter(buffer[start + i], name.charAt(i))) i++;
+            if (i == name.length()) return code;
+        }
+        return UNKNOWN;
+    }
+
+    // What String.trim() strips: chars up to U+0020 (bytes are signed, so UTF-8 bytes above 0x7F would look smaller)
+    private static boolean isBlank(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    // Case-insensitive match of an ASCII byte against an upper-case letter
+    private static boolean sameLetter(byte b, char upper) {
+        return (b & 0xDF) == upper;
+    }
+
+    private int parseNumber(int start, int end) {
+        if (start == end || end - start > 10) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') return -1;
+            value = value * 10 + (buffer[i] - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+
+        private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private int findNewline(int from) {
+        for (int i = from; i < bufferEnd; i++) {
+            if (buffer[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    // Moves the unread bytes to the front, growing the buffer only for a line longer than it
+    private void makeRoom() throws IOException {
+        int pending = bufferEnd - bufferStart;
+        if (bufferStart == 0) {
+            if (buffer.length >= MAX_LINE) throw new IOException("command line too long");
+            buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_LINE));
+            return;
+        }
+        System.arraycopy(buffer, bufferStart, buffer, 0, pending);
+        bufferStart = 0;
+        bufferEnd = pending;
+    }
+}
@@ -1,12 +1,21 @@
 package ca.concordia.server;
 
+import ca.concordia.filesystem.Defragmenter;
 import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.Scrubber;
+import ca.concordia.filesystem.ShardedFileSystem;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -15,27 +24,75 @@ import java.net.Socket;
  */
 public class FileServer {
 
-    private final FileSystemManager fsManager;
+    private final ShardedFileSystem fsManager;
+    private final List<Defragmenter> defragmenters = new ArrayList<>();
+    private final List<Scrubber> scrubbers = new ArrayList<>();
+    private final ReplicationPrimary replication;
+    private ReplicationFollower follower;   // set when this server is a read-only follower
     private final int port;
 
+    private static final byte[] LOG_PREFIX = "Received from client: ".getBytes(StandardCharsets.UTF_8);
+
+    // Overload protection: connections beyond the limit and requests that cannot be
+    // queued are answered with "ERROR: busy" instead of slowing everyone down
+    private int maxConnections = 64;
+    private AdmissionController admission = new AdmissionController(8, 32, 4);
+
     // Constructor: create new instance of FileSystemManager
     public FileServer(int port, String fileSystemName, int totalSize) {
-        this.fsManager = new FileSystemManager(fileSystemName, totalSize);
+        this(port, fileSystemName, totalSize, 1);
+    }
+
+    // Constructor: spread files over several volumes, one FileSystemManager each
+    public FileServer(int port, String fileSystemName, int totalSize, int shards) {
+        this.fsManager = new ShardedFileSystem(fileSystemName, totalSize, shards);
+        for (FileSystemManager shard : fsManager.getShards()) {
+            defragmenters.add(new Defragmenter(shard));
+            scrubbers.add(new Scrubber(shard));
+        }
+        this.replication = new ReplicationPrimary(fsManager);
+        fsManager.setMutationListener(replication);
         this.port = port;
     }
 
+    // Makes this server a read-only follower of another FileServer (call before start)
+    public void followPrimary(String primaryHost, int primaryPort, long maxLagMillis) {
+        this.follower = new ReplicationFollower(fsManager, primaryHost, primaryPort, maxLagMillis);
+    }
+
+    // Sets the overload limits (call before start)
+    public void setAdmissionLimits(int maxConnections, int maxInFlight, int maxQueued, int maxQueuedPerClient) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.admission = new AdmissionController(maxInFlight, maxQueued, maxQueuedPerClient);
+    }
+
     
     //Starts the server and listens for incoming client connections.
     public void start() {
+        // one pooled thread per connection, with no queue: a connection either gets a thread or is turned away
+        ThreadPoolExecutor connections =
+                new ThreadPoolExecutor(0, maxConnections, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             System.out.println("Server started. Listening on port " + port + "...");
+            for (Defragmenter defragmenter : defragmenters) {
+                defragmenter.start();
+            }
+            for (Scrubber scrubber : scrubbers) {
+                scrubber.start();
+            }
+            if (follower != null) {
+                follower.start();
+            }
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
                 System.out.println("Connected to client: " + clientSocket);
 
-                // Spawn a new thread for each client
-                new Thread(() -> handleClient(clientSocket)).start();
+                try {
+                    connections.execute(() -> handleClient(clientSocket));
+                } catch (RejectedExecutionException e) {
+                    rejectConnection(clientSocket);
+                }
             }
         } catch (Exception e) {
             System.err.println("Could not start server on port " + port);
@@ -47,70 +104,122 @@ public class FileServer {
     //Handles a single client connection in a dedicated thread.
     private void handleClient(Socket clientSocket) {
         try (
-            BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)
+            CommandParser request = new CommandParser(clientSocket.getInputStream());
+            ResponseEncoder response = new ResponseEncoder(clientSocket.getOutputStream())
         ) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("Received from client: " + line);
-                String[] parts = line.trim().split(" ", 3); // max 3 parts: command, filename, content
-                String command = parts[0].toUpperCase();
+            String client = clientSocket.getInetAddress().getHostAddress();
+            while (request.next()) {
+                logRequest(request);
+                int command = request.opcode();
 
+                boolean admitted = false;
                 try {
+                    String refusal = follower != null ? follower.refusal(request.opcodeName()) : null;
+                    if (refusal != null) {
+                        response.sendLine(refusal);
+                        continue;
+                    }
+                    if (command != CommandParser.QUIT && command != CommandParser.REPLICATE) {
+                        if (!admission.acquire(client)) {
+                            response.sendLine("ERROR: busy");
+                            continue;
+                        }
+                        admitted = true;
+                    }
+
                     switch (command) {
-                        case "CREATE":
-                            if (parts.length < 2) {
-                                writer.println("ERROR: Missing filename");
-                            } else if (parts[1].length() > 11) {
-                                writer.println("ERROR: Filename too long (max 11 chars)");
+                        case CommandParser.CREATE:
+                            if (!request.hasArgument()) {
+                                response.sendLine("ERROR: Missing filename");
+                            } else if (request.argumentBaseNameLength() > 11) {
+                                response.sendLine("ERROR: Filename too long (max 11 chars)");
                             } else {
-                                fsManager.createFile(parts[1]);
-                                writer.println("SUCCESS: File '" + parts[1] + "' created.");
+                                String filename = request.argument();
+                                boolean compressed = request.hasRest() && request.restIs("COMPRESS");
+                                fsManager.createFile(filename, compressed);
+                                response.begin().append("SUCCESS: File '").append(filename).append("' created.").send();
                             }
                             break;
 
-                        case "WRITE":
-                            if (parts.length < 3) {
-                                writer.println("ERROR: Missing filename or content");
+                        case CommandParser.MKDIR:
+                            if (!request.hasArgument()) {
+                                response.sendLine("ERROR: Missing directory name");
+                            } else if (request.argumentBaseNameLength() > 11) {
+                                response.sendLine("ERROR: Directory name too long (max 11 chars)");
                             } else {
-                                fsManager.writeFile(parts[1], parts[2].getBytes());
-                                writer.println("SUCCESS: File '" + parts[1] + "' written.");
+                                String dirname = request.argument();
+                                fsManager.makeDirectory(dirname);
+                                response.begin().append("SUCCESS: Directory '").append(dirname).append("' created.").send();
                             }
                             break;
 
-                        case "READ":
-                            if (parts.length < 2) {
-                                writer.println("ERROR: Missing filename");
+                        case CommandParser.WRITE:
+                            if (!request.hasRest()) {
+                                response.sendLine("ERROR: Missing filename or content");
                             } else {
-                                byte[] data = fsManager.readFile(parts[1]);
-                                writer.println("SUCCESS: " + new String(data));
+                                String filename = request.argument();
+                                fsManager.writeFile(filename, request.restBytes());
+                                response.begin().append("SUCCESS: File '").append(filename).append("' written.").send();
                             }
                             break;
 
-                        case "DELETE":
-                            if (parts.length < 2) {
-                                writer.println("ERROR: Missing filename");
+                        case CommandParser.READ:
+                            if (!request.hasArgument()) {
+                                response.sendLine("ERROR: Missing filename");
+                            } else if (!request.hasRest()) {
+                                byte[] data = fsManager.readFile(request.argument());
+                                response.begin().append("SUCCESS: ").append(data).send();
                             } else {
-                                fsManager.deleteFile(parts[1]);
-                                writer.println("SUCCESS: File '" + parts[1] + "' deleted.");
+                                // READ <file> <offset> <length> reads only that range
+                                int offset = request.restNumber(0), length = request.restNumber(1);
+                                if (offset < 0 || length < 0) {
+                                    response.sendLine("ERROR: Usage READ <filename> [<offset> <length>]");
+                                } else {
+                                    byte[] data = fsManager.readFile(request.argument(), offset, length);
+                                    response.begin().append("SUCCESS: ").append(data).send();
+                                }
                             }
                             break;
 
-                        case "LIST":
-                            String[] files = fsManager.listFiles();
-                            writer.println("SUCCESS: " + String.join(", ", files));
+                        case CommandParser.DELETE:
+                            if (!request.hasArgument()) {
+                                response.sendLine("ERROR: Missing filename");
+                            } else {
+                                String filename = request.argument();
+                                fsManager.deleteFile(filename);
+                                response.begin().append("SUCCESS: File '").append(filename).append("' deleted.").send();
+                            }
+                            break;
+
+                        case CommandParser.LIST:
+                            String[] files = request.hasArgument()
+                                    ? fsManager.listDirectory(request.argument())
+                                    : fsManager.listFiles();
+                            response.begin().append("SUCCESS: ");
+                            for (int i = 0; i < files.length; i++) {
+                                if (i > 0) response.append(", ");
+                                response.append(files[i]);
+                            }
+                            response.send();
                             break;
 
-                        case "QUIT":
-                            writer.println("SUCCESS: Disconnecting.");
+                        case CommandParser.REPLICATE:
+                            // streams until the follower goes away
+                            replication.serve(new PrintWriter(clientSocket.getOutputStream(), true));
+                            return;
+
+                        case CommandParser.QUIT:
+                            response.sendLine("SUCCESS: Disconnecting.");
                             return;
 
                         default:
-                            writer.println("ERROR: Unknown command.");
+                            response.sendLine("ERROR: Unknown command.");
                             break;
                     }
                 } catch (Exception e) {
-                    writer.println("ERROR: " + e.getMessage());
+                    response.begin().append("ERROR: ").append(String.valueOf(e.getMessage())).send();
+                } finally {
+                    if (admitted) admission.release();
                 }
             }
         } catch (Exception e) {
@@ -122,4 +231,25 @@ public class FileServer {
             } catch (Exception ignore) {}
         }
     }
+
+    // Echoes a command to the console without building a String for it
+    private static void logRequest(CommandParser request) throws IOException {
+        synchronized (System.out) {
+            System.out.write(LOG_PREFIX, 0, LOG_PREFIX.length);
+            request.writeLine(System.out);
+            System.out.write('\n');
+        }
+    }
+
+    // Turns away a connection the server has no thread for
+    private void rejectConnection(Socket clientSocket) {
+        try (PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)) {
+            writer.println("ERROR: busy");
+        } catch (Exception ignore) {
+        } finally {
+            try {
+                clientSocket.close();
+            } catch (Exception ignore) {}
+        }
+    }
 }
\ No newline at end of file
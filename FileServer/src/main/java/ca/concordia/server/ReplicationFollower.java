@@ -0,0 +1,164 @@
+package ca.concordia.server;
+
+import ca.concordia.filesystem.ShardedFileSystem;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Keeps a local volume in step with a primary and decides which requests a follower may
+ * serve. Writes are always refused; reads are refused once the follower is known to be
+ * behind the primary by more than the lag bound (including before the first snapshot).
+ * Receiving a line is not enough: a mutation only shows the primary's state as of the
+ * moment it was queued, so it counts by its age, and only a heartbeat (sent when the
+ * queue is empty) means the follower has caught up.
+ */
+class ReplicationFollower {
+
+    private static final long RECONNECT_MILLIS = 500;
+
+    private final ShardedFileSystem fsManager;
+    private final String primaryHost;
+    private final int primaryPort;
+    private final long maxLagMillis;
+
+    // local time the applied state was current on the primary; 0 until the first snapshot
+    private volatile long freshAsOfMillis;
+    private volatile long appliedSeq;
+
+    ReplicationFollower(ShardedFileSystem fsManager, String primaryHost, int primaryPort, long maxLagMillis) {
+        this.fsManager = fsManager;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    // Starts following on a daemon thread, reconnecting (and re-snapshotting) after failures
+    void start() {
+        Thread worker = new Thread(() -> {
+            while (true) {
+                try {
+                    follow();
+                } catch (Exception e) {
+                    System.err.println("Lost primary " + primaryHost + ":" + primaryPort + ": " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "replication-follower");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Returns the error to send instead of running the command, or null if it may run here
+    String refusal(String command) {
+        switch (command) {
+            case "CREATE":
+            case "MKDIR":
+            case "WRITE":
+            case "DELETE":
+                return "ERROR: read-only follower";
+            case "READ":
+            case "LIST":
+                return isLagging() ? "ERROR: follower lagging behind primary" : null;
+            default:
+                return null;
+        }
+    }
+
+    boolean isLagging() {
+        return System.currentTimeMillis() - freshAsOfMillis > maxLagMillis;
+    }
+
+    long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    private void follow() throws Exception {
+        try (
+            Socket socket = new Socket(primaryHost, primaryPort);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)
+        ) {
+            socket.setSoTimeout((int) Math.max(maxLagMillis, 1000));
+            writer.println("REPLICATE");
+
+            Set<String> snapshotPaths = null;   // non-null while a snapshot is being received
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ", 5);
+                long ageMillis = 0;
+                switch (parts[0]) {
+                    case "SNAPSHOT":
+                        snapshotPaths = new HashSet<>();
+                        continue;
+                    case "SNAPSHOT_END":
+                        prune(snapshotPaths);
+                        snapshotPaths = null;
+                        break;
+                    case "HEARTBEAT":
+                        break;
+                    default:
+                        ageMillis = Long.parseLong(parts[2]);
+                        try {
+                            apply(parts);
+                        } catch (Exception e) {
+                            System.err.println("Could not apply " + parts[0] + " " + parts[3] + ": " + e.getMessage());
+                        }
+                        if (snapshotPaths != null) snapshotPaths.add(parts[3]);
+                        break;
+                }
+                appliedSeq = Long.parseLong(parts[1]);
+                if (snapshotPaths == null) freshAsOfMillis = System.currentTimeMillis() - ageMillis;
+            }
+        }
+    }
+
+    // Applies one mutation; every case tolerates having been applied already
+    private void apply(String[] parts) throws Exception {
+        String path = parts[3];
+        switch (parts[0]) {
+            case "MKDIR":
+                if (!fsManager.exists(path)) fsManager.makeDirectory(path);
+                break;
+            case "CREATE":
+                boolean compressed = parts[4].equals("1");
+                if (fsManager.exists(path) && fsManager.isCompressed(path) != compressed) {
+                    fsManager.deleteFile(path);
+                }
+                if (!fsManager.exists(path)) fsManager.createFile(path, compressed);
+                break;
+            case "WRITE":
+                if (!fsManager.exists(path)) fsManager.createFile(path);
+                fsManager.writeFile(path, Base64.getDecoder().decode(parts.length > 4 ? parts[4] : ""));
+                break;
+            case "DELETE":
+                if (fsManager.exists(path)) fsManager.deleteFile(path);
+                break;
+            default:
+                System.err.println("Ignoring replication line " + parts[0]);
+                break;
+        }
+    }
+
+    // Removes local paths that the snapshot did not contain, contents before their directories
+    private void prune(Set<String> snapshotPaths) throws Exception {
+        List<String> local = new ArrayList<>(fsManager.listTree());
+        for (int i = local.size() - 1; i >= 0; i--) {
+            String path = local.get(i);
+            String name = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+            if (!snapshotPaths.contains(name)) fsManager.deleteFile(name);
+        }
+    }
+}
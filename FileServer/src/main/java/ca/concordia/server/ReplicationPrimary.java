@@ -0,0 +1,136 @@
+package ca.concordia.server;
+
+import ca.concordia.filesystem.MutationListener;
+import ca.concordia.filesystem.ShardedFileSystem;
+
+import java.io.PrintWriter;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Ships the mutation stream to followers. A follower connects with REPLICATE and gets a
+ * snapshot of the whole namespace followed by every later mutation, one line each:
+ *
+ *   SNAPSHOT | SNAPSHOT_END seq | HEARTBEAT seq
+ *   MKDIR seq age path | CREATE seq age path 0|1 | WRITE seq age path base64 | DELETE seq age path
+ *
+ * age is how many milliseconds the mutation waited in the follower's queue, so the follower
+ * can tell how far behind it is. A heartbeat is only sent when the queue is empty.
+ *
+ * The follower's queue is registered before the snapshot is taken, so mutations that race
+ * with the snapshot are replayed after it; replaying them is idempotent.
+ */
+class ReplicationPrimary implements MutationListener {
+
+    private static final int MAX_BACKLOG = 10_000;      // a follower further behind is dropped and re-snapshots
+    private static final long HEARTBEAT_MILLIS = 200;
+    private static final Update DROPPED = new Update("DROPPED", "");
+
+    private final ShardedFileSystem fsManager;
+    private final List<BlockingQueue<Update>> followers = new CopyOnWriteArrayList<>();
+    private long seq;   // guarded by this
+
+    ReplicationPrimary(ShardedFileSystem fsManager) {
+        this.fsManager = fsManager;
+    }
+
+    @Override
+    public void created(String path, boolean directory, boolean compressed) {
+        if (directory) {
+            publish("MKDIR", path, null);
+        } else {
+            publish("CREATE", path, compressed ? "1" : "0");
+        }
+    }
+
+    @Override
+    public void written(String path, byte[] contents) {
+        publish("WRITE", path, Base64.getEncoder().encodeToString(contents));
+    }
+
+    @Override
+    public void deleted(String path) {
+        publish("DELETE", path, null);
+    }
+
+    private synchronized void publish(String op, String path, String argument) {
+        seq++;
+        if (followers.isEmpty()) return;
+        Update update = new Update(op + " " + seq, path + (argument == null ? "" : " " + argument));
+        for (BlockingQueue<Update> queue : followers) {
+            if (!queue.offer(update)) {
+                followers.remove(queue);
+                queue.clear();
+                queue.offer(DROPPED);
+            }
+        }
+    }
+
+    private synchronized long currentSeq() {
+        return seq;
+    }
+
+    // Streams a snapshot and then live mutations to one follower until it disconnects
+    void serve(PrintWriter writer) {
+        BlockingQueue<Update> queue = new LinkedBlockingQueue<>(MAX_BACKLOG);
+        followers.add(queue);
+        try {
+            long snapshotSeq = currentSeq();
+            writer.println("SNAPSHOT");
+            for (String path : fsManager.listTree()) {
+                sendSnapshotEntry(writer, snapshotSeq, path);
+            }
+            writer.println("SNAPSHOT_END " + snapshotSeq);
+
+            while (!writer.checkError()) {
+                Update update = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (update == DROPPED) return;
+                writer.println(update != null ? update.line() : "HEARTBEAT " + currentSeq());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Replication stream failed: " + e.getMessage());
+        } finally {
+            followers.remove(queue);
+        }
+    }
+
+    private void sendSnapshotEntry(PrintWriter writer, long snapshotSeq, String path) {
+        try {
+            if (path.endsWith("/")) {
+                writer.println("MKDIR " + snapshotSeq + " 0 " + path.substring(0, path.length() - 1));
+                return;
+            }
+            boolean compressed = fsManager.isCompressed(path);
+            byte[] contents = fsManager.readFile(path);
+            writer.println("CREATE " + snapshotSeq + " 0 " + path + (compressed ? " 1" : " 0"));
+            if (contents.length > 0) {
+                writer.println("WRITE " + snapshotSeq + " 0 " + path + " " + Base64.getEncoder().encodeToString(contents));
+            }
+        } catch (Exception e) {
+            // deleted while the snapshot was running; the queued DELETE covers it
+        }
+    }
+
+    // A queued mutation line and when it was published; its age is filled in as it is sent
+    private static class Update {
+        private final String head;     // "op seq"
+        private final String tail;     // "path [argument]"
+        private final long publishedNanos = System.nanoTime();
+
+        Update(String head, String tail) {
+            this.head = head;
+            this.tail = tail;
+        }
+
+        String line() {
+            return head + " " + (System.nanoTime() - publishedNanos) / 1_000_000 + " " + tail;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ca.concordia.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+
+/**
+ * Builds each response line in a pooled byte buffer and hands it to the socket in a
+ * single write, instead of concatenating Strings and encoding them through a
+ * PrintWriter. Text is encoded to UTF-8 as it is appended, so a response made of
+ * constants and already existing Strings or bytes allocates nothing.
+ */
+public class ResponseEncoder implements AutoCloseable {
+
+    private final OutputStream out;
+    private final byte[] pooled = BufferPool.acquire();
+    private byte[] buffer = pooled;     // replaced by a larger array only while a long response is built
+    private int length;
+
+    public ResponseEncoder(OutputStream out) {
+        this.out = out;
+    }
+
+    // Starts a new response line
+    public ResponseEncoder begin() {
+        length = 0;
+        buffer = pooled;
+        return this;
+    }
+
+    public ResponseEncoder append(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ensure(1);
+                buffer[length++] = (byte) c;
+            } else if (c < 0x800) {
+                ensure(2);
+                buffer[length++] = (byte) (0xC0 | c >> 6);
+                buffer[length++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensure(4);
+                buffer[length++] = (byte) (0xF0 | codePoint >> 18);
+                buffer[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                buffer[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                buffer[length++] = (byte) (0x80 | codePoint & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                ensure(1);
+                buffer[length++] = '?';     // unpaired surrogate, as String.getBytes() does
+            } else {
+                ensure(3);
+                buffer[length++] = (byte) (0xE0 | c >> 12);
+                buffer[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[length++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return this;
+    }
+
+    public ResponseEncoder append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    // Terminates the line and sends it
+    public void send() throws IOException {
+        ensure(1);
+        buffer[length++] = '\n';
+        out.write(buffer, 0, length);
+        out.flush();
+        length = 0;
+        buffer = pooled;
+    }
+
+    // Shorthand for a whole constant line
+    public void sendLine(String text) throws IOException {
+        begin().append(text).send();
+    }
+
+    @Override
+    public void close() {
+        BufferPool.release(pooled);
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
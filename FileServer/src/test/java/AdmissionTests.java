@@ -0,0 +1,149 @@
+import ca.concordia.server.AdmissionController;
+import helpers.ClientRunner;
+import helpers.ServerRunner;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionTests {
+    static final int PORT = 12352;
+
+    // Runs clients that each fire requests back to back; returns the latencies of admitted requests in nanos
+    private List<Long> overload(AdmissionController admission, int clients, int requestsPerClient,
+                                long serviceMillis, AtomicInteger peakInFlight) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            String client = "client" + c;
+            futures.add(pool.submit(() -> {
+                for (int r = 0; r < requestsPerClient; r++) {
+                    long start = System.nanoTime();
+                    if (!admission.acquire(client)) continue;
+                    try {
+                        peakInFlight.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(serviceMillis);
+                    } finally {
+                        running.decrementAndGet();
+                        admission.release();
+                    }
+                    latencies.add(System.nanoTime() - start);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        pool.shutdown();
+        Collections.sort(latencies);
+        return latencies;
+    }
+
+    private long p99Millis(List<Long> sorted) {
+        return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1) / 1_000_000;
+    }
+
+    @Test
+    @Timeout(60)
+    void testOverloadKeepsAdmittedTailLatencyBounded() throws Exception {
+        AtomicInteger peak = new AtomicInteger();
+        AdmissionController bounded = new AdmissionController(2, 6, 1);
+        List<Long> admitted = overload(bounded, 32, 20, 5, peak);
+
+        assertTrue(bounded.getRejected() > 0, "expected overload to be shed: " + bounded);
+        assertTrue(peak.get() <= 2, "more requests ran at once than allowed: " + peak.get());
+        // at most 6 queued ahead on 2 slots: roughly 4 service times, with generous slack for the scheduler
+        assertTrue(p99Millis(admitted) < 250, "admitted p99 " + p99Millis(admitted) + " ms");
+    }
+
+    @Test
+    @Timeout(10)
+    void testSlotsGoToClientsInTurn() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 10, 10);
+        assertTrue(admission.acquire("holder"));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        String[] arrivals = {"greedy", "greedy", "greedy", "polite"};
+        for (int i = 0; i < arrivals.length; i++) {
+            String client = arrivals[i];
+            Thread thread = new Thread(() -> {
+                try {
+                    admission.acquire(client);
+                    order.add(client);
+                    admission.release();
+                } catch (InterruptedException ignored) {}
+            });
+            thread.start();
+            threads.add(thread);
+            while (admission.getQueued() < i + 1) Thread.sleep(1);    // queue them in a known order
+        }
+
+        admission.release();
+        for (Thread thread : threads) thread.join();
+        assertEquals(List.of("greedy", "polite", "greedy", "greedy"), order);
+    }
+
+    @Test
+    void testPerClientQueueLimit() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 10, 1);
+        assertTrue(admission.acquire("a"));
+        Thread waiter = new Thread(() -> {
+            try {
+                admission.acquire("b");
+                admission.release();
+            } catch (InterruptedException ignored) {}
+        });
+        waiter.start();
+        while (admission.getQueued() < 1) Thread.sleep(1);
+
+        assertFalse(admission.acquire("b"), "b already has its one queued request");
+        admission.release();
+        waiter.join();
+        assertEquals(1, admission.getRejected());
+    }
+
+    @Test
+    @Timeout(20)
+    void testServerTurnsAwayConnectionsOverTheLimit() throws Exception {
+        TestVolumes.delete("admissionfs.dat");
+        ServerRunner server = new ServerRunner(PORT);
+        server.start("--volume", "admissionfs.dat", "--max-connections", "1");
+        Socket held = null;
+        try {
+            // the readiness probe may still hold the only handler thread for a moment
+            for (int attempt = 0; attempt < 50 && held == null; attempt++) {
+                Socket socket = new Socket("localhost", PORT);
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                out.println("LIST");
+                String reply = new BufferedReader(new InputStreamReader(socket.getInputStream())).readLine();
+                if (reply != null && reply.startsWith("SUCCESS")) {
+                    held = socket;  // the only handler thread is now taken
+                } else {
+                    socket.close();
+                    Thread.sleep(100);
+                }
+            }
+            assertNotNull(held, "never got the handler thread");
+
+            long start = System.nanoTime();
+            assertEquals("ERROR: busy", ClientRunner.send(PORT, "LIST"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "rejection should be fast");
+        } finally {
+            if (held != null) held.close();
+            server.stop();
+            TestVolumes.delete("admissionfs.dat");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import ca.concordia.filesystem.ChecksumStats;
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.Scrubber;
+import ca.concordia.filesystem.datastructures.FEntry;
+import ca.concordia.filesystem.datastructures.FNode;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChecksumTests {
+    static final String VOLUME = "checksumfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    // Flips one byte of the first data block behind the file system's back
+    private void corruptFirstDataBlock() throws Exception {
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "rw")) {
+            raw.seek(2 * 128 + 5);
+            int b = raw.read();
+            raw.seek(2 * 128 + 5);
+            raw.write(b ^ 0xFF);
+        }
+    }
+
+    @Test
+    void testCorruptBlockIsDetectedOnRead() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "hello checksum".getBytes());
+        assertEquals("hello checksum", new String(fs.readFile("a")));
+
+        corruptFirstDataBlock();
+        Exception e = assertThrows(Exception.class, () -> fs.readFile("a"));
+        assertTrue(e.getMessage().contains("corrupt"), e.getMessage());
+        assertEquals(1, fs.getChecksumStats().getCorruptBlocks());
+    }
+
+    @Test
+    void testChecksumsSurviveReload() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "x".repeat(300).getBytes());
+
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals("x".repeat(300), new String(reloaded.readFile("a")));
+        corruptFirstDataBlock();
+        assertThrows(Exception.class, () -> reloaded.readFile("a"));
+    }
+
+    @Test
+    void testScrubberFindsCorruptionBeforeAnyRead() throws Exception {
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.writeFile("a", "first block".getBytes());
+        fs.writeFile("b", "second block".getBytes());
+        Scrubber scrubber = new Scrubber(fs);
+        assertEquals(0, scrubber.runOnce(2));
+
+        corruptFirstDataBlock();
+        assertEquals(1, scrubber.runOnce(2));
+        assertEquals(4, fs.getChecksumStats().getScrubbedBlocks());
+    }
+
+    @Test
+    void testCorruptionAfterAReadIsStillDetected() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "y".repeat(500).getBytes());
+        assertEquals("y".repeat(500), new String(fs.readFile("a")));     // every block passes once
+
+        corruptFirstDataBlock();
+        assertThrows(Exception.class, () -> fs.readFile("a"));
+        assertEquals(1, fs.getChecksumStats().getCorruptBlocks());
+    }
+
+    @Test
+    void testSeedsChecksumsOfShortLastBlock() throws Exception {
+        // a version 3 volume (no checksums yet) with a full block 3 and a file cut off 12 bytes into block 5
+        String full = "f".repeat(128), tail = "short block!";
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "rw")) {
+            raw.setLength(0);
+            raw.writeInt(0x46534D00);
+            raw.writeShort(3);
+            FEntry fullEntry = new FEntry("full", (short) 128, (short) 0, FEntry.ROOT, (byte) 0, (short) 128);
+            FEntry tailEntry = new FEntry("tail", (short) 12, (short) 1, FEntry.ROOT, (byte) 0, (short) 12);
+            raw.write(fullEntry.toBytes(), 0, FEntry.V3_SIZE);
+            raw.write(tailEntry.toBytes(), 0, FEntry.V3_SIZE);
+            for (int i = 2; i < 5; i++) raw.write(new FEntry().toBytes(), 0, FEntry.V3_SIZE);
+            raw.write(new FNode(3, -1).toBytes());
+            raw.write(new FNode(5, -1).toBytes());
+            for (int i = 2; i < 10; i++) raw.write(new FNode().toBytes());
+            raw.seek(3 * 128);
+            raw.write(full.getBytes());
+            raw.seek(5 * 128);
+            raw.write(tail.getBytes());     // the file ends here, as the old writer left it
+        }
+
+        FileSystemManager migrated = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals(full, new String(migrated.readFile("full")));
+        assertEquals(tail, new String(migrated.readFile("tail")));
+        assertEquals(0, new Scrubber(migrated).runOnce(10));
+        assertEquals(0, migrated.getChecksumStats().getCorruptBlocks());
+    }
+}
@@ -0,0 +1,64 @@
+import ca.concordia.filesystem.CompressionStats;
+import ca.concordia.filesystem.FileSystemManager;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionTests {
+    static final String VOLUME = "compressfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    @Test
+    void testTextFitsInFewerBlocks() throws Exception {
+        String text = "the quick brown fox jumps over the lazy dog. ".repeat(40);  // 1800 bytes, more than the volume holds
+        fs.createFile("a", true);
+        fs.writeFile("a", text.getBytes());
+        assertEquals(text, new String(fs.readFile("a")));
+
+        CompressionStats stats = fs.getCompressionStats();
+        assertTrue(stats.getBytesStored() < 128, "expected text to deflate into one block: " + stats);
+    }
+
+    @Test
+    void testIncompressibleDataStoredRaw() throws Exception {
+        byte[] noise = new byte[300];
+        new Random(42).nextBytes(noise);
+        fs.createFile("a", true);
+        fs.writeFile("a", noise);
+        assertArrayEquals(noise, fs.readFile("a"));
+        assertEquals(0, fs.getCompressionStats().getBytesSaved());
+    }
+
+    @Test
+    void testCompressionIsOptIn() throws Exception {
+        fs.createFile("plain");
+        assertThrows(Exception.class, () -> fs.writeFile("plain", "x".repeat(2000).getBytes()));
+        assertEquals(0, fs.getCompressionStats().getBytesIn());
+    }
+
+    @Test
+    void testCompressedFileSurvivesReload() throws Exception {
+        String text = "abcabcabc".repeat(100);
+        fs.createFile("a", true);
+        fs.writeFile("a", text.getBytes());
+
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals(text, new String(reloaded.readFile("a")));
+        reloaded.writeFile("a", (text + "more").getBytes());
+        assertEquals(text + "more", new String(reloaded.readFile("a")));
+    }
+}
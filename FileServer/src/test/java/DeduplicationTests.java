@@ -0,0 +1,117 @@
+import ca.concordia.filesystem.DeduplicationStats;
+import ca.concordia.filesystem.FileSystemManager;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeduplicationTests {
+    static final String VOLUME = "dedupfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+        fs.setDeduplication(true);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    // count blocks, each with different content (8 fill every data block of the volume)
+    private static String distinctBlocks(int count) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < count; i++) content.append(String.valueOf((char) ('a' + i)).repeat(128));
+        return content.toString();
+    }
+
+    @Test
+    void testIdenticalFilesShareBlocks() throws Exception {
+        String payload = distinctBlocks(5);
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.writeFile("a", payload.getBytes());
+        fs.writeFile("b", payload.getBytes());     // would not fit without sharing
+
+        DeduplicationStats stats = fs.getDeduplicationStats();
+        assertEquals(10, stats.getLogicalBlocks());
+        assertEquals(5, stats.getPhysicalBlocks());
+        assertEquals(5 * 128, stats.getBytesSaved());
+        assertEquals(payload, new String(fs.readFile("b")));
+    }
+
+    @Test
+    void testBlockFreedOnlyWithLastReference() throws Exception {
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.writeFile("a", "same contents".getBytes());
+        fs.writeFile("b", "same contents".getBytes());
+
+        fs.deleteFile("a");
+        fs.flushReclamation();
+        assertEquals("same contents", new String(fs.readFile("b")));
+        assertEquals(1, fs.getDeduplicationStats().getPhysicalBlocks());
+
+        fs.deleteFile("b");
+        assertEquals(0, fs.getDeduplicationStats().getPhysicalBlocks());
+    }
+
+    @Test
+    void testRepeatedBlocksWithinOneFile() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "x".repeat(4 * 128 + 5).getBytes());
+        DeduplicationStats stats = fs.getDeduplicationStats();
+        assertEquals(5, stats.getLogicalBlocks());
+        assertEquals(2, stats.getPhysicalBlocks());
+        assertEquals("x".repeat(4 * 128 + 5), new String(fs.readFile("a")));
+    }
+
+    @Test
+    void testSharingSurvivesReload() throws Exception {
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.writeFile("a", "shared block".getBytes());
+        fs.writeFile("b", "shared block".getBytes());
+
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        reloaded.deleteFile("a");
+        assertEquals("shared block", new String(reloaded.readFile("b")));
+        assertEquals(1, reloaded.getDeduplicationStats().getPhysicalBlocks());
+    }
+
+    @Test
+    void testConcurrentWritersStayConsistent() throws Exception {
+        // blocks are written outside the metadata lock; shared and fresh blocks must still add up
+        String[] payloads = {distinctBlocks(2), distinctBlocks(2), "z".repeat(200), "q".repeat(150)};
+        for (int f = 0; f < payloads.length; f++) fs.createFile("f" + f);
+        ExecutorService pool = Executors.newFixedThreadPool(payloads.length);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int f = 0; f < payloads.length; f++) {
+            int file = f;
+            futures.add(pool.submit(() -> {
+                for (int round = 0; round < 200; round++) {
+                    fs.writeFile("f" + file, payloads[file].getBytes());
+                    assertEquals(payloads[file], new String(fs.readFile("f" + file)));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        pool.shutdown();
+
+        for (int f = 0; f < payloads.length; f++) {
+            assertEquals(payloads[f], new String(fs.readFile("f" + f)));
+        }
+        assertEquals(6, fs.getDeduplicationStats().getPhysicalBlocks());   // a and b blocks once, plus 2 + 2
+        assertEquals(0, fs.getChecksumStats().getCorruptBlocks());
+    }
+}
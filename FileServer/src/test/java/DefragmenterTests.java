@@ -0,0 +1,71 @@
+import ca.concordia.filesystem.Defragmenter;
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.FragmentationStats;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DefragmenterTests {
+    static final String VOLUME = "defragfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    // Leaves "d" split around "c": blocks [a][d][c c][d]
+    private void fragment() throws Exception {
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.createFile("c");
+        fs.writeFile("a", "A".repeat(100).getBytes());
+        fs.writeFile("b", "B".repeat(100).getBytes());
+        fs.writeFile("c", "C".repeat(200).getBytes());
+        fs.deleteFile("b");
+        fs.flushReclamation();
+        fs.createFile("d");
+        fs.writeFile("d", "D".repeat(200).getBytes());
+    }
+
+    @Test
+    void testReportsFragmentation() throws Exception {
+        fragment();
+        FragmentationStats stats = fs.getFragmentationStats();
+        assertEquals(3, stats.getFiles());
+        assertEquals(1, stats.getFragmentedFiles());
+        assertEquals(4, stats.getFragments());
+    }
+
+    @Test
+    void testCompactionKeepsContents() throws Exception {
+        fragment();
+        String expected = "D".repeat(200);
+        assertEquals(1, new Defragmenter(fs, 0, 0, 4).runOnce());
+
+        FragmentationStats stats = fs.getFragmentationStats();
+        assertEquals(0, stats.getFragmentedFiles());
+        assertEquals(2, stats.getBlocksMoved());
+        assertEquals(expected, new String(fs.readFile("d")));
+        assertEquals("C".repeat(200), new String(fs.readFile("c")));
+
+        // the new layout survives a reload
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals(expected, new String(reloaded.readFile("d")));
+        assertEquals(0, reloaded.getFragmentationStats().getFragmentedFiles());
+    }
+
+    @Test
+    void testSkipsWhileForegroundIsBusy() throws Exception {
+        fragment();
+        assertEquals(0, new Defragmenter(fs, 0, 60_000, 4).runOnce());
+        assertEquals(1, fs.getFragmentationStats().getFragmentedFiles());
+    }
+}
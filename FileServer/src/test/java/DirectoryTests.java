@@ -0,0 +1,106 @@
+import ca.concordia.filesystem.FileSystemManager;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectoryTests {
+    static final String VOLUME = "dirfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    @Test
+    void testCreateReadInsideDirectory() throws Exception {
+        fs.makeDirectory("docs");
+        fs.createFile("docs/a.txt");
+        fs.writeFile("/docs/a.txt", "hello".getBytes());
+        assertEquals("hello", new String(fs.readFile("docs/a.txt")));
+        assertThrows(Exception.class, () -> fs.readFile("a.txt"));
+    }
+
+    @Test
+    void testListOnlyShowsOneDirectory() throws Exception {
+        fs.makeDirectory("docs");
+        fs.createFile("docs/b");
+        fs.createFile("docs/a");
+        fs.createFile("top");
+        assertArrayEquals(new String[]{"a", "b"}, fs.listDirectory("docs"));
+        assertArrayEquals(new String[]{"docs/", "top"}, fs.listFiles());
+    }
+
+    @Test
+    void testMissingParentAndNonEmptyDelete() throws Exception {
+        Exception missing = assertThrows(Exception.class, () -> fs.createFile("nope/a"));
+        assertTrue(missing.getMessage().contains("does not exist"));
+
+        fs.makeDirectory("docs");
+        fs.createFile("docs/a");
+        Exception notEmpty = assertThrows(Exception.class, () -> fs.deleteFile("docs"));
+        assertTrue(notEmpty.getMessage().contains("not empty"));
+
+        fs.deleteFile("docs/a");
+        fs.deleteFile("docs");
+        assertEquals(0, fs.listFiles().length);
+    }
+
+    @Test
+    void testNamespaceSurvivesReload() throws Exception {
+        fs.makeDirectory("docs");
+        fs.createFile("docs/a");
+        fs.writeFile("docs/a", "kept".getBytes());
+
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertArrayEquals(new String[]{"a"}, reloaded.listDirectory("docs"));
+        assertEquals("kept", new String(reloaded.readFile("docs/a")));
+    }
+
+    // Writes a version 1 volume holding one 5-byte file with the given name
+    private void writeLegacyVolume(String name) throws Exception {
+        // version 1 layout: 15-byte entries at offset 0, then 8-byte nodes, data from block 2
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "rw")) {
+            raw.setLength(0);
+            ByteBuffer entry = ByteBuffer.allocate(15);
+            entry.put(name.getBytes()).position(11);
+            entry.putShort((short) 5).putShort((short) 0);
+            raw.write(entry.array());
+            raw.seek(5 * 15);
+            raw.writeInt(2);
+            raw.writeInt(-1);
+            raw.seek(2 * 128);
+            raw.write("hello".getBytes());
+        }
+    }
+
+    @Test
+    void testMountsLegacyVolume() throws Exception {
+        writeLegacyVolume("old");
+        FileSystemManager legacy = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals("hello", new String(legacy.readFile("old")));
+
+        FileSystemManager upgraded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals("hello", new String(upgraded.readFile("old")));
+    }
+
+    @Test
+    void testLegacyFileNamedLikeTheMagicIsNotAHeader() throws Exception {
+        writeLegacyVolume("FSM");     // "FSM\0" is exactly the header's magic
+        FileSystemManager legacy = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals("hello", new String(legacy.readFile("FSM")));
+
+        FileSystemManager upgraded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals("hello", new String(upgraded.readFile("FSM")));
+    }
+}
@@ -0,0 +1,152 @@
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.datastructures.FEntry;
+import ca.concordia.filesystem.datastructures.FNode;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtentTests {
+    static final String VOLUME = "extentfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    private String pattern(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) text.append((char) ('a' + i % 26));
+        return text.toString();
+    }
+
+    @Test
+    void testContiguousFileIsOneExtent() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", pattern(600).getBytes());
+        assertEquals(1, fs.getFragmentationStats().getFragments());
+        assertEquals(pattern(600), new String(fs.readFile("a")));
+    }
+
+    @Test
+    void testRangeReadUsesOnlyTheBlocksItNeeds() throws Exception {
+        String text = pattern(600);
+        fs.createFile("a");
+        fs.writeFile("a", text.getBytes());
+
+        assertEquals(text.substring(300, 500), new String(fs.readFile("a", 300, 200)));
+        assertEquals(1, fs.getReadStats().getIos());
+        assertEquals(2, fs.getReadStats().getBlocksRead());     // blocks 2 and 3 of the file only
+
+        assertEquals(text.substring(590), new String(fs.readFile("a", 590, 100)));
+        assertEquals(0, fs.readFile("a", 700, 10).length);
+    }
+
+    @Test
+    void testRangeReadToTheEnd() throws Exception {
+        String text = pattern(300);
+        fs.createFile("a");
+        fs.writeFile("a", text.getBytes());
+        fs.createFile("z", true);
+        fs.writeFile("z", text.getBytes());
+        fs.createFile("t");
+        fs.writeFile("t", "tiny file".getBytes());
+
+        assertEquals(text.substring(10), new String(fs.readFile("a", 10, Integer.MAX_VALUE)));
+        assertEquals(text.substring(10), new String(fs.readFile("z", 10, Integer.MAX_VALUE)));
+        assertEquals("file", new String(fs.readFile("t", 5, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void testRangeReadAcrossExtents() throws Exception {
+        // blocks [a][d][c c][d]
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.createFile("c");
+        fs.writeFile("a", "A".repeat(100).getBytes());
+        fs.writeFile("b", "B".repeat(100).getBytes());
+        fs.writeFile("c", "C".repeat(200).getBytes());
+        fs.deleteFile("b");
+        fs.flushReclamation();
+        fs.createFile("d");
+        String text = pattern(250);
+        fs.writeFile("d", text.getBytes());
+        assertEquals(4, fs.getFragmentationStats().getFragments());
+
+        assertEquals(text.substring(120, 140), new String(fs.readFile("d", 120, 20)));
+        assertEquals(text.substring(200), new String(fs.readFile("d", 200, 50)));
+    }
+
+    @Test
+    void testRangeReadOfCompressedFile() throws Exception {
+        String text = "abcabcabc".repeat(50);
+        fs.createFile("z", true);
+        fs.writeFile("z", text.getBytes());
+        assertEquals(text.substring(100, 160), new String(fs.readFile("z", 100, 60)));
+        assertEquals(1, fs.getReadStats().getFileReads());     // inflated whole, but still one read
+
+        fs.createFile("t");
+        fs.writeFile("t", "tiny".getBytes());    // small enough to live in its entry
+        assertEquals("in", new String(fs.readFile("t", 1, 2)));
+        assertEquals(2, fs.getReadStats().getFileReads());
+        assertEquals(1, fs.getReadStats().getInlineReads());
+    }
+
+    @Test
+    void testMigratesNodeChainVolume() throws Exception {
+        // a version 4 volume holding one file in blocks 5 and 2, in that order
+        String text = pattern(200);
+        byte[] first = new byte[128], second = new byte[128];
+        System.arraycopy(text.getBytes(), 0, first, 0, 128);
+        System.arraycopy(text.getBytes(), 128, second, 0, 72);
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "rw")) {
+            raw.setLength(0);
+            raw.writeInt(0x46534D00);
+            raw.writeShort(4);
+            FEntry old = new FEntry("old", (short) 200, (short) 0, FEntry.ROOT, (byte) 0, (short) 200);
+            raw.write(old.toBytes(), 0, FEntry.V3_SIZE);
+            for (int i = 1; i < 5; i++) raw.write(new FEntry().toBytes(), 0, FEntry.V3_SIZE);
+            raw.write(new FNode(5, 1).toBytes());
+            raw.write(new FNode(2, -1).toBytes());
+            for (int i = 2; i < 10; i++) raw.write(new FNode().toBytes());
+            for (int i = 0; i < 10; i++) {
+                raw.writeInt(i == 5 ? crc(first) : i == 2 ? crc(second) : 0);
+            }
+            raw.seek(2 * 128);
+            raw.write(second);
+            raw.seek(5 * 128);
+            raw.write(first);
+            raw.setLength(10 * 128);
+        }
+
+        FileSystemManager migrated = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals(text, new String(migrated.readFile("old")));
+        assertEquals(2, migrated.getFragmentationStats().getFragments());
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "r")) {
+            raw.readInt();
+            assertEquals(6, raw.readShort());
+        }
+
+        // the migrated volume mounts again and stays writable
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals(text, new String(reloaded.readFile("old")));
+        reloaded.writeFile("old", "new".getBytes());
+        assertEquals("new", new String(reloaded.readFile("old")));
+    }
+
+    private int crc(byte[] block) {
+        CRC32C crc = new CRC32C();
+        crc.update(block);
+        return (int) crc.getValue();
+    }
+}
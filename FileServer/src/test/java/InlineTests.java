@@ -0,0 +1,75 @@
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.ReadStats;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InlineTests {
+    static final String VOLUME = "inlinefs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    @Test
+    void testTinyFileTakesNoBlockAndNoIo() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "hello".getBytes());
+        assertEquals(0, fs.getFragmentationStats().getUsedBlocks());
+
+        assertEquals("hello", new String(fs.readFile("a")));
+        ReadStats stats = fs.getReadStats();
+        assertEquals(1, stats.getInlineReads());
+        assertEquals(0, stats.getIos());
+        assertEquals("ell", new String(fs.readFile("a", 1, 3)));
+    }
+
+    @Test
+    void testFileMovesBetweenInlineAndBlocks() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "tiny".getBytes());
+        fs.writeFile("a", "x".repeat(200).getBytes());
+        assertEquals("x".repeat(200), new String(fs.readFile("a")));
+        assertEquals(2, fs.getFragmentationStats().getUsedBlocks());
+
+        fs.writeFile("a", "tiny again".getBytes());
+        assertEquals("tiny again", new String(fs.readFile("a")));
+        assertEquals(0, fs.getDeduplicationStats().getPhysicalBlocks());    // no block is referenced any more
+    }
+
+    @Test
+    void testInlineFilesSurviveReload() throws Exception {
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.writeFile("a", "0123456789".getBytes());     // exactly the inline capacity
+        fs.writeFile("b", "01234567890".getBytes());    // one byte over
+
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        assertEquals("0123456789", new String(reloaded.readFile("a")));
+        assertEquals("01234567890", new String(reloaded.readFile("b")));
+        assertEquals(1, reloaded.getFragmentationStats().getUsedBlocks());
+    }
+
+    @Test
+    void testTinyFilesFitOnAFullVolume() throws Exception {
+        fs.createFile("big");
+        fs.writeFile("big", "b".repeat(8 * 128).getBytes());    // every data block
+        for (int i = 0; i < 4; i++) {
+            fs.createFile("t" + i);
+            fs.writeFile("t" + i, ("tiny " + i).getBytes());
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals("tiny " + i, new String(fs.readFile("t" + i)));
+        }
+        assertEquals("b".repeat(8 * 128), new String(fs.readFile("big")));
+    }
+}
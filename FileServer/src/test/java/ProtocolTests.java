@@ -0,0 +1,140 @@
+import ca.concordia.server.CommandParser;
+import ca.concordia.server.ResponseEncoder;
+import org.junit.jupiter.api.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProtocolTests {
+
+    private CommandParser parser(String text) {
+        return new CommandParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testParsesLikeTrimAndSplit() throws Exception {
+        CommandParser request = parser("  write a.txt hello  world \r\nread a.txt\nLIST\n\nfoo x\n"
+                + "WRITE f héllo wörld é\nCREATE café\nREAD été\ncreate z.txt Compress ");
+
+        assertTrue(request.next());
+        assertEquals(CommandParser.WRITE, request.opcode());
+        assertEquals("a.txt", request.argument());
+        assertEquals("hello  world", new String(request.restBytes()));
+
+        assertTrue(request.next());
+        assertEquals(CommandParser.READ, request.opcode());
+        assertEquals("a.txt", request.argument());
+        assertFalse(request.hasRest());
+
+        assertTrue(request.next());
+        assertEquals(CommandParser.LIST, request.opcode());
+        assertFalse(request.hasArgument());
+
+        assertTrue(request.next());
+        assertEquals(CommandParser.UNKNOWN, request.opcode());
+
+        assertTrue(request.next());
+        assertEquals(CommandParser.UNKNOWN, request.opcode());
+
+        // non-ASCII bytes at either end of a token are not whitespace
+        assertTrue(request.next());
+        assertEquals("héllo wörld é", new String(request.restBytes(), StandardCharsets.UTF_8));
+        assertTrue(request.next());
+        assertEquals("café", request.argument());
+        assertEquals(4, request.argumentBaseNameLength());
+        assertTrue(request.next());
+        assertEquals("été", request.argument());
+
+        assertTrue(request.next());     // last line without a newline
+        assertEquals(CommandParser.CREATE, request.opcode());
+        assertTrue(request.restIs("COMPRESS"));
+        assertFalse(request.next());
+    }
+
+    @Test
+    void testFilenamesAreReusedAndMeasured() throws Exception {
+        CommandParser request = parser("READ dir/notes.txt\nREAD dir/notes.txt\nMKDIR a/b/abcdefghijkl/\n");
+        request.next();
+        String first = request.argument();
+        request.next();
+        assertSame(first, request.argument());
+        assertEquals(9, request.argumentBaseNameLength());
+        request.next();
+        assertEquals(12, request.argumentBaseNameLength());
+    }
+
+    @Test
+    void testRangeArgumentsAreParsedInPlace() throws Exception {
+        CommandParser request = parser("READ a.txt 100  20\nREAD a.txt 5 x\nREAD a.txt 99999999999 1\n");
+        request.next();
+        assertEquals(100, request.restNumber(0));
+        assertEquals(20, request.restNumber(1));
+        assertEquals(-1, request.restNumber(2));
+        request.next();
+        assertEquals(5, request.restNumber(0));
+        assertEquals(-1, request.restNumber(1));
+        request.next();
+        assertEquals(-1, request.restNumber(0));    // does not fit in an int
+    }
+
+    @Test
+    void testLongLineGrowsTheBuffer() throws Exception {
+        String payload = "p".repeat(10_000);
+        CommandParser request = parser("WRITE big " + payload + "\nQUIT\n");
+        assertTrue(request.next());
+        assertEquals(payload, new String(request.restBytes()));
+        assertTrue(request.next());
+        assertEquals(CommandParser.QUIT, request.opcode());
+    }
+
+    @Test
+    void testEncoderWritesUtf8Lines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponseEncoder response = new ResponseEncoder(out);
+        response.begin().append("SUCCESS: File '").append("café € 😀").append("' created.").send();
+        response.begin().append("SUCCESS: ").append("x".repeat(9000).getBytes()).send();
+        response.sendLine("ERROR: busy");
+        String expected = "SUCCESS: File 'café € 😀' created.\nSUCCESS: " + "x".repeat(9000) + "\nERROR: busy\n";
+        assertEquals(expected, out.toString("UTF-8"));
+    }
+
+    // Bytes allocated by this thread while running the given loop
+    private long allocatedBytes(Runnable work) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        work.run();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+    }
+
+    @Test
+    void testRequestLoopAllocatesAlmostNothing() throws Exception {
+        int requests = 20_000;
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < requests; i++) {
+            script.append(i % 2 == 0 ? "read notes.txt\n" : "DELETE notes.txt\n");
+        }
+        byte[] input = script.toString().getBytes();
+
+        Runnable parsed = () -> {
+            try (CommandParser request = new CommandParser(new ByteArrayInputStream(input));
+                 ResponseEncoder response = new ResponseEncoder(OutputStream.nullOutputStream())) {
+                while (request.next()) {
+                    if (request.opcode() == CommandParser.UNKNOWN) fail();
+                    response.begin().append("SUCCESS: File '").append(request.argument()).append("' deleted.").send();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        };
+
+        for (int i = 0; i < 5; i++) parsed.run();   // warm up so the measurement sees compiled code
+        long parsedBytes = allocatedBytes(parsed);
+
+        assertTrue(parsedBytes / requests < 16, parsedBytes + " bytes for " + requests + " requests");
+    }
+}
@@ -0,0 +1,103 @@
+import ca.concordia.filesystem.FileSystemManager;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReclamationTests {
+    static final String VOLUME = "reclaimfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    @Test
+    void testDeletedBlocksAreZeroed() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "secret contents".getBytes());
+        fs.deleteFile("a");
+        fs.flushReclamation();
+        assertEquals(0, fs.getPendingReclamation());
+
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "r")) {
+            byte[] block = new byte[128];
+            raw.seek(2 * 128);  // first data block
+            raw.readFully(block);
+            assertArrayEquals(new byte[128], block);
+        }
+    }
+
+    @Test
+    void testFreedBlocksAreReusableImmediately() throws Exception {
+        String full = "x".repeat(8 * 128);
+        fs.createFile("a");
+        fs.writeFile("a", full.getBytes());
+        fs.deleteFile("a");
+        fs.createFile("b");
+        fs.writeFile("b", full.getBytes());
+        assertEquals(full, new String(fs.readFile("b")));
+    }
+
+    @Test
+    void testRewriteReleasesPreviousBlocks() throws Exception {
+        fs.createFile("a");
+        for (int i = 0; i < 5; i++) {
+            String content = String.valueOf(i).repeat(4 * 128);
+            fs.writeFile("a", content.getBytes());
+            assertEquals(content, new String(fs.readFile("a")));
+        }
+    }
+
+    @Test
+    void testBlocksFreedBeforeACrashAreZeroedOnMount() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "kept contents".repeat(2).getBytes());
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "rw")) {
+            raw.seek(5 * 128);      // a free block that still holds a deleted file's data
+            raw.write("leftover secret".getBytes());
+        }
+
+        FileSystemManager reloaded = new FileSystemManager(VOLUME, TestVolumes.SIZE);
+        try (RandomAccessFile raw = new RandomAccessFile(VOLUME, "r")) {
+            byte[] block = new byte[128];
+            raw.seek(5 * 128);
+            raw.readFully(block);
+            assertArrayEquals(new byte[128], block);
+        }
+        assertEquals("kept contents".repeat(2), new String(reloaded.readFile("a")));
+        reloaded.close();
+    }
+
+    @Test
+    void testCloseDrainsQueueAndStopsThread() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "secret contents".getBytes());
+        fs.deleteFile("a");
+        fs.close();
+        assertEquals(0, fs.getPendingReclamation());
+
+        int before = reclaimerThreads();
+        for (int i = 0; i < 5; i++) {
+            new FileSystemManager(VOLUME, TestVolumes.SIZE).close();
+        }
+        assertEquals(before, reclaimerThreads());
+    }
+
+    private static int reclaimerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("block-reclaimer")) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,132 @@
+import helpers.ClientRunner;
+import helpers.ServerRunner;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationTests {
+    static final int PRIMARY = 12350;
+    static final int FOLLOWER = 12351;
+    static final int FAKE_PRIMARY = 12353;
+
+    ServerRunner primary;
+    ServerRunner follower;
+
+    @BeforeEach
+    void setup() throws Exception {
+        TestVolumes.delete("primaryfs.dat", "followerfs.dat");
+        primary = new ServerRunner(PRIMARY);
+        primary.start("--volume", "primaryfs.dat");
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        if (follower != null) follower.stop();
+        primary.stop();
+        TestVolumes.delete("primaryfs.dat", "followerfs.dat");
+    }
+
+    private void startFollower() throws Exception {
+        startFollower(PRIMARY);
+    }
+
+    private void startFollower(int primaryPort) throws Exception {
+        follower = new ServerRunner(FOLLOWER);
+        follower.start("--volume", "followerfs.dat", "--follow", "localhost:" + primaryPort, "--max-lag-ms", "1000");
+    }
+
+    // Polls the follower until the response matches or the deadline passes
+    private static String awaitFollower(String command, Predicate<String> done) throws Exception {
+        String response = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            response = ClientRunner.send(FOLLOWER, command);
+            if (response != null && done.test(response)) return response;
+            Thread.sleep(100);
+        }
+        return response;
+    }
+
+    @Test
+    @Timeout(30)
+    void testFollowerServesPrimaryWrites() throws Exception {
+        startFollower();
+        ClientRunner.send(PRIMARY, "CREATE live");
+        ClientRunner.send(PRIMARY, "WRITE live streamed");
+        assertEquals("SUCCESS: streamed", awaitFollower("READ live", r -> r.contains("streamed")));
+
+        ClientRunner.send(PRIMARY, "DELETE live");
+        String listing = awaitFollower("LIST", r -> r.startsWith("SUCCESS") && !r.contains("live"));
+        assertFalse(listing.contains("live"));
+    }
+
+    @Test
+    @Timeout(30)
+    void testFollowerCatchesUpFromSnapshot() throws Exception {
+        ClientRunner.send(PRIMARY, "MKDIR docs");
+        ClientRunner.send(PRIMARY, "CREATE docs/old");
+        ClientRunner.send(PRIMARY, "WRITE docs/old before");
+        startFollower();
+        assertEquals("SUCCESS: before", awaitFollower("READ docs/old", r -> r.contains("before")));
+    }
+
+    @Test
+    @Timeout(30)
+    void testFollowerIsReadOnly() throws Exception {
+        startFollower();
+        assertEquals("ERROR: read-only follower", ClientRunner.send(FOLLOWER, "CREATE nope"));
+    }
+
+    @Test
+    @Timeout(30)
+    void testFollowerRefusesReadsBeyondLagBound() throws Exception {
+        startFollower();
+        ClientRunner.send(PRIMARY, "CREATE f");
+        awaitFollower("LIST", r -> r.contains("f"));
+
+        primary.stop();
+        String response = awaitFollower("LIST", r -> r.startsWith("ERROR"));
+        assertTrue(response.contains("lagging"), response);
+    }
+
+    @Test
+    @Timeout(30)
+    void testFollowerBehindABusyPrimaryIsLagging() throws Exception {
+        // a hand-driven primary whose mutations each waited 5 s in the follower's queue
+        try (ServerSocket fake = new ServerSocket(FAKE_PRIMARY)) {
+            startFollower(FAKE_PRIMARY);
+            try (Socket link = fake.accept();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(link.getInputStream()));
+                 PrintWriter writer = new PrintWriter(link.getOutputStream(), true)) {
+                assertEquals("REPLICATE", reader.readLine());
+                writer.println("SNAPSHOT");
+                writer.println("SNAPSHOT_END 0");
+                assertTrue(awaitFollower("LIST", r -> r.startsWith("SUCCESS")).startsWith("SUCCESS"));
+
+                // traffic keeps arriving, but all of it is old
+                writer.println("CREATE 1 5000 f 0");
+                String response = null;
+                for (int seq = 2; seq < 50; seq++) {
+                    writer.println("WRITE " + seq + " 5000 f " + Base64.getEncoder().encodeToString(("v" + seq).getBytes()));
+                    response = ClientRunner.send(FOLLOWER, "READ f");
+                    if (response != null && response.contains("lagging")) break;
+                    Thread.sleep(100);
+                }
+                assertEquals("ERROR: follower lagging behind primary", response);
+
+                // an empty queue on the primary means caught up
+                writer.println("HEARTBEAT 50");
+                assertTrue(awaitFollower("READ f", r -> r.startsWith("SUCCESS")).startsWith("SUCCESS: v"));
+            }
+        }
+    }
+}
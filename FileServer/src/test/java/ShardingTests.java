@@ -0,0 +1,155 @@
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.ShardedFileSystem;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardingTests {
+    static final String[] VOLUMES = {"shardfs.dat", "shardfs-1.dat", "shardfs-2.dat", "shardfs-3.dat"};
+
+    ShardedFileSystem fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        TestVolumes.delete(VOLUMES);
+        fs = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 4);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUMES);
+    }
+
+    @Test
+    void testCapacityScalesWithShards() throws Exception {
+        // a single volume holds 5 entries; four shards take more than that
+        for (int i = 0; i < 10; i++) {
+            fs.createFile("f" + i);
+            fs.writeFile("f" + i, ("data" + i).getBytes());
+        }
+        assertEquals(10, fs.listFiles().length);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("data" + i, new String(fs.readFile("f" + i)));
+            assertEquals("ta" + i, new String(fs.readFile("f" + i, 2, 10)));
+        }
+    }
+
+    @Test
+    void testRootListMergesShards() throws Exception {
+        for (String name : new String[]{"c", "a", "d", "b"}) fs.createFile(name);
+        assertArrayEquals(new String[]{"a", "b", "c", "d"}, fs.listFiles());
+
+        int used = 0;
+        for (FileSystemManager shard : fs.getShards()) {
+            if (shard.listFiles().length > 0) used++;
+        }
+        assertTrue(used > 1, "expected names to spread over several shards");
+    }
+
+    @Test
+    void testDirectoryStaysOnOneShard() throws Exception {
+        fs.makeDirectory("docs");
+        fs.createFile("docs/x");
+        fs.createFile("docs/y");
+        assertEquals(fs.shardIndex("docs"), fs.shardIndex("docs/x"));
+        assertArrayEquals(new String[]{"x", "y"}, fs.listDirectory("docs"));
+        assertTrue(Arrays.asList(fs.listDirectory("/")).contains("docs/"));
+    }
+
+    @Test
+    void testPlacementIsStableAcrossRestarts() throws Exception {
+        fs.createFile("kept");
+        fs.writeFile("kept", "value".getBytes());
+        ShardedFileSystem reopened = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 4);
+        assertEquals("value", new String(reopened.readFile("kept")));
+    }
+
+    @Test
+    void testChangingShardCountKeepsFilesReachable() throws Exception {
+        ShardedFileSystem two = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 2);
+        for (String name : new String[]{"a", "b", "c", "d"}) {
+            two.createFile(name);
+            two.writeFile(name, ("data " + name).getBytes());
+        }
+        two.createFile("empty");
+        two.makeDirectory("docs");
+        two.createFile("docs/x");
+        two.writeFile("docs/x", "inside docs".getBytes());
+
+        ShardedFileSystem three = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 3);
+        assertArrayEquals(new String[]{"a", "b", "c", "d", "docs/", "empty"}, three.listFiles());
+        for (String name : new String[]{"a", "b", "c", "d"}) {
+            assertEquals("data " + name, new String(three.readFile(name)));
+            assertEquals(three.shardIndex(name), indexOfShardHolding(three, name));
+        }
+        assertEquals("inside docs", new String(three.readFile("docs/x")));
+        assertEquals(0, three.readFile("empty").length);
+        for (String name : new String[]{"a", "b", "c"}) three.deleteFile(name);    // one volume holds 5 entries
+        assertFalse(three.exists("a"));
+
+        // shrinking drains the volumes that are no longer part of the ring
+        ShardedFileSystem one = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 1);
+        assertArrayEquals(new String[]{"d", "docs/", "empty"}, one.listFiles());
+        for (String volume : new String[]{"shardfs-1.dat", "shardfs-2.dat", "shardfs-3.dat"}) {
+            assertFalse(Files.exists(Path.of(volume)), volume + " should have been drained and removed");
+        }
+        assertEquals("data d", new String(one.readFile("d")));
+        assertEquals("inside docs", new String(one.readFile("docs/x")));
+    }
+
+    @Test
+    void testInterruptedMoveIsFinishedOnNextMount() throws Exception {
+        // names the two-shard ring puts on shard 1
+        List<String> owned = new ArrayList<>();
+        try (ShardedFileSystem probe = new ShardedFileSystem("shardprobe.dat", TestVolumes.SIZE, 2)) {
+            for (int i = 0; owned.size() < 2; i++) {
+                if (probe.shardIndex("n" + i) == 1) owned.add("n" + i);
+            }
+        }
+        TestVolumes.delete("shardprobe.dat", "shardprobe-1.dat");
+        String copied = owned.get(0), partial = owned.get(1);
+
+        // everything on shard 0 under one shard, then the state a crash mid-move leaves on shard 1:
+        // one file fully copied, the other created but not yet written
+        fs.close();
+        TestVolumes.delete(VOLUMES);
+        try (ShardedFileSystem one = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 1)) {
+            one.createFile(copied);
+            one.writeFile(copied, "copied data".getBytes());
+            one.createFile(partial, true);
+            one.writeFile(partial, "partial data".getBytes());
+        }
+        try (FileSystemManager owner = new FileSystemManager("shardfs-1.dat", TestVolumes.SIZE)) {
+            owner.createFile(copied);
+            owner.writeFile(copied, "copied data".getBytes());
+            owner.createFile(partial);
+        }
+
+        try (ShardedFileSystem two = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 2)) {
+            assertEquals(new TreeSet<>(owned), new TreeSet<>(Arrays.asList(two.listFiles())));
+            assertEquals(0, two.getShards()[0].listFiles().length);
+            assertEquals("copied data", new String(two.readFile(copied)));
+            assertEquals("partial data", new String(two.readFile(partial)));
+            assertTrue(two.isCompressed(partial));
+        }
+        try (ShardedFileSystem again = new ShardedFileSystem("shardfs.dat", TestVolumes.SIZE, 2)) {
+            assertEquals("partial data", new String(again.readFile(partial)));
+        }
+    }
+
+    private int indexOfShardHolding(ShardedFileSystem sharded, String name) {
+        FileSystemManager[] shards = sharded.getShards();
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i].exists(name)) return i;
+        }
+        return -1;
+    }
+}
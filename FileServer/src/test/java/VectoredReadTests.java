@@ -0,0 +1,114 @@
+import ca.concordia.filesystem.FileSystemManager;
+import ca.concordia.filesystem.ReadStats;
+import helpers.TestVolumes;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectoredReadTests {
+    static final String VOLUME = "vectorfs.dat";
+
+    FileSystemManager fs;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fs = TestVolumes.fresh(VOLUME);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        TestVolumes.remove(fs, VOLUME);
+    }
+
+    @Test
+    void testContiguousFileIsOneRead() throws Exception {
+        fs.createFile("a");
+        fs.writeFile("a", "a".repeat(600).getBytes());
+        assertEquals("a".repeat(600), new String(fs.readFile("a")));
+
+        ReadStats stats = fs.getReadStats();
+        assertEquals(1, stats.getIos());
+        assertEquals(5, stats.getBlocksRead());
+    }
+
+    @Test
+    void testShortGapIsBridged() throws Exception {
+        // blocks [a][d][c c][d]: d's two blocks are two apart
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.createFile("c");
+        fs.writeFile("a", "A".repeat(100).getBytes());
+        fs.writeFile("b", "B".repeat(100).getBytes());
+        fs.writeFile("c", "C".repeat(200).getBytes());
+        fs.deleteFile("b");
+        fs.flushReclamation();
+        fs.createFile("d");
+        fs.writeFile("d", "D".repeat(200).getBytes());
+
+        assertEquals("D".repeat(200), new String(fs.readFile("d")));
+        ReadStats stats = fs.getReadStats();
+        assertEquals(1, stats.getIos());
+        assertEquals(2, stats.getGapBlocksRead());
+    }
+
+    @Test
+    void testWideGapTakesSeparateReads() throws Exception {
+        // blocks [d][b b b][d]: too far apart to be worth bridging
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.createFile("c");
+        fs.writeFile("a", "A".repeat(100).getBytes());
+        fs.writeFile("b", "B".repeat(300).getBytes());
+        fs.writeFile("c", "C".repeat(100).getBytes());
+        fs.deleteFile("a");
+        fs.deleteFile("c");
+        fs.flushReclamation();
+        fs.createFile("d");
+        fs.writeFile("d", ("x".repeat(128) + "y".repeat(50)).getBytes());
+
+        assertEquals("x".repeat(128) + "y".repeat(50), new String(fs.readFile("d")));
+        assertEquals(2, fs.getReadStats().getIos());
+    }
+
+    @Test
+    void testOutOfOrderChainIsReadInDiskOrder() throws Exception {
+        String x = "x".repeat(128), y = "y".repeat(128);
+        fs.setDeduplication(true);
+        fs.createFile("a");
+        fs.createFile("b");
+        fs.writeFile("a", (x + y).getBytes());
+        fs.writeFile("b", (y + x).getBytes());    // shares a's blocks in reverse order
+
+        assertEquals(y + x, new String(fs.readFile("b")));
+        assertEquals(1, fs.getReadStats().getIos());
+    }
+
+    @Test
+    void testFragmentedVolumeNeedsFewerReadsThanBlocks() throws Exception {
+        // five files interleaved across the volume: [b][a][c][a][e][a][b][d]
+        String[] names = {"a", "b", "c", "d", "e"};
+        for (String name : names) {
+            fs.createFile(name);
+            fs.writeFile(name, name.repeat(100).getBytes());
+        }
+        fs.deleteFile("b");
+        fs.deleteFile("d");
+        fs.flushReclamation();
+        fs.writeFile("a", "a".repeat(300).getBytes());
+        fs.flushReclamation();
+        fs.createFile("b");
+        fs.writeFile("b", "b".repeat(200).getBytes());
+        fs.createFile("d");
+        fs.writeFile("d", "d".repeat(100).getBytes());
+        assertEquals(2, fs.getFragmentationStats().getFragmentedFiles());
+
+        long blocksInChains = 0;
+        for (String name : names) blocksInChains += (fs.readFile(name).length + 127) / 128;
+
+        // "a" spans its three blocks in one read, taking the two gap blocks between them along
+        ReadStats stats = fs.getReadStats();
+        assertEquals(8, blocksInChains);
+        assertEquals(6, stats.getIos());
+        assertEquals(2, stats.getGapBlocksRead());
+    }
+}
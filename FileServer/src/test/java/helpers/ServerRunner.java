@@ -4,17 +4,33 @@ import java.io.*;
 import java.net.*;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class ServerRunner {
     private Process process;
+    private final int port;
 
-    public void start() throws IOException, InterruptedException {
-        process = new ProcessBuilder("java", "-cp", "target/classes", "ca.concordia.Main")
+    public ServerRunner() {
+        this(12345);
+    }
+
+    public ServerRunner(int port) {
+        this.port = port;
+    }
+
+    public void start(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList("java", "-cp", "target/classes", "ca.concordia.Main"));
+        if (port != 12345) command.addAll(Arrays.asList("--port", String.valueOf(port)));
+        command.addAll(Arrays.asList(args));
+        process = new ProcessBuilder(command)
                 .redirectErrorStream(true)
                 .start();
         // Wait for port to become available (server ready)
         Instant start = Instant.now();
-        while (!isPortOpen("localhost", 12345)) {
+        while (!isPortOpen("localhost", port)) {
             if (Duration.between(start, Instant.now()).getSeconds() > 10)
                 throw new RuntimeException("Server failed to start within timeout");
             Thread.sleep(200);
@@ -34,7 +50,11 @@ public class ServerRunner {
     public void stop() {
         if (process != null && process.isAlive()) {
             process.destroy();
+            try {
+                process.waitFor(5, TimeUnit.SECONDS);    // free the port for the next server
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 }
-
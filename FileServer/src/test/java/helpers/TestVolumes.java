@@ -0,0 +1,39 @@
+package helpers;
+
+import ca.concordia.filesystem.FileSystemManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Volume files for the file system tests: each test starts from a fresh volume of
+ * ten 128-byte blocks and leaves no volume file behind.
+ */
+public class TestVolumes {
+
+    public static final int SIZE = 10 * 128;
+
+    private TestVolumes() {
+    }
+
+    // Deletes whatever an earlier run left behind and mounts an empty volume
+    public static FileSystemManager fresh(String filename) throws Exception {
+        delete(filename);
+        return new FileSystemManager(filename, SIZE);
+    }
+
+    // Closes the file system, if any, then deletes the volume files
+    public static void remove(AutoCloseable fs, String... filenames) throws Exception {
+        try {
+            if (fs != null) fs.close();
+        } finally {
+            delete(filenames);
+        }
+    }
+
+    public static void delete(String... filenames) throws Exception {
+        for (String filename : filenames) {
+            Files.deleteIfExists(Path.of(filename));
+        }
+    }
+}